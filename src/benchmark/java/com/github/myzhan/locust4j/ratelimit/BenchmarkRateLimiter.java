@@ -0,0 +1,66 @@
+package com.github.myzhan.locust4j.ratelimit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Contended acquire of rate limiters, the throughput should be close to maxThreshold, and unlimited rate limiters
+ * show the overhead of acquire.
+ *
+ * @author myzhan
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+public class BenchmarkRateLimiter {
+
+    @Param({"100000", "1000000000"})
+    private long maxThreshold;
+
+    private AbstractRateLimiter stable;
+    private AbstractRateLimiter pacing;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stable = new StableRateLimiter(maxThreshold);
+        stable.start();
+        pacing = new PacingRateLimiter(maxThreshold);
+        pacing.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stable.stop();
+        pacing.stop();
+    }
+
+    @Benchmark
+    public boolean acquireStable() {
+        return stable.acquire();
+    }
+
+    @Benchmark
+    public boolean acquirePacing() {
+        return pacing.acquire();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(BenchmarkRateLimiter.class.getSimpleName())
+            .forks(1)
+            .warmupIterations(1)
+            .measurementIterations(2)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.myzhan.locust4j.stats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Recording a test result should not allocate, check gc.alloc.rate.norm reported by the gc profiler.
+ *
+ * @author myzhan
+ */
+@State(Scope.Benchmark)
+public class BenchmarkRecord {
+
+    private final Stats stats = new Stats();
+    private final Endpoint endpoint = stats.endpoint("GET", "/endpoint");
+    private final long[] batch = new long[1000];
+
+    {
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = i % 100;
+        }
+    }
+
+    @Benchmark
+    public void recordSuccess() {
+        stats.recordSuccess("GET", "/api", 42, 1024);
+    }
+
+    @Benchmark
+    public void recordSuccessOfEndpoint() {
+        endpoint.success(42, 1024);
+    }
+
+    @Benchmark
+    public void recordSuccessOneByOne() {
+        for (long responseTime : batch) {
+            stats.recordSuccess("GET", "/pipeline", responseTime, 1);
+        }
+    }
+
+    @Benchmark
+    public void recordSuccessBatch() {
+        stats.recordSuccessBatch("GET", "/pipeline", batch, batch.length, batch.length);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(BenchmarkRecord.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .threads(4)
+            .forks(1)
+            .warmupIterations(1)
+            .measurementIterations(2)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
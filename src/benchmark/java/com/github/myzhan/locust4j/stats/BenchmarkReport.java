@@ -0,0 +1,79 @@
+package com.github.myzhan.locust4j.stats;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.github.myzhan.locust4j.message.StatsMessageEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Build and encode a large report, 100 endpoints with hundreds of response time buckets each.
+ *
+ * @author myzhan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BenchmarkReport {
+
+    private static final int ENDPOINTS = 100;
+    private static final long MAX_RESPONSE_TIME = 60000;
+
+    private final Stats stats = new Stats();
+    private final StatsMessageEncoder encoder = new StatsMessageEncoder();
+
+    @Setup(Level.Invocation)
+    public void record() {
+        for (int i = 0; i < ENDPOINTS; i++) {
+            Endpoint endpoint = stats.endpoint("GET", "/endpoint/" + i);
+            // one response time of each bucket
+            for (long rt = 0; rt <= MAX_RESPONSE_TIME; rt += step(rt)) {
+                endpoint.success(rt, 1024);
+            }
+            endpoint.failure(10, "error " + i);
+        }
+        stats.drainShards(true);
+    }
+
+    private static long step(long responseTime) {
+        if (responseTime < 100) {
+            return 1;
+        } else if (responseTime < 1000) {
+            return 10;
+        } else if (responseTime < 10000) {
+            return 100;
+        }
+        return 1000;
+    }
+
+    @Benchmark
+    public byte[] report() throws IOException {
+        Map<String, Object> data = stats.collectReportData();
+        return encoder.encode(data, 100, "nodeId").getBytes();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(BenchmarkReport.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .warmupIterations(1)
+            .measurementIterations(2)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -1,6 +1,12 @@
 package com.github.myzhan.locust4j.utils;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.myzhan.locust4j.stats.Stats;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
@@ -9,13 +15,33 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
 /**
  * @author myzhan
  */
+@State(Scope.Thread)
 public class BenchmarkMD5 {
 
+    private final Map<String, Object> errors = new HashMap<>();
+    private final Stats stats = new Stats();
+
     @Benchmark
     public String calculateMD5() {
         return Utils.md5("hello", "world", "locust4j");
     }
 
+    /**
+     * How stats used to look up an error for every failure, before it's recorded.
+     */
+    @Benchmark
+    public Object lookupErrorByMD5() {
+        return errors.get(Utils.md5("GET", "/api", "Connection refused"));
+    }
+
+    /**
+     * How stats records a failure now, the md5 of error is computed once when it's reported.
+     */
+    @Benchmark
+    public void recordFailure() {
+        stats.recordFailure("GET", "/api", 10, "Connection refused");
+    }
+
     public static void main(String[] args) throws RunnerException {
         Options opt = new OptionsBuilder()
             .include(BenchmarkMD5.class.getSimpleName())
@@ -0,0 +1,182 @@
+package com.github.myzhan.locust4j;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.github.myzhan.locust4j.ratelimit.AbstractRateLimiter;
+import com.github.myzhan.locust4j.stats.Endpoint;
+import com.github.myzhan.locust4j.stats.Stats;
+import com.github.myzhan.locust4j.utils.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link AbstractAsyncTask} sends requests with asynchronous clients, so a single thread keeps multiple requests
+ * in flight.
+ *
+ * Subtypes start a request in {@link #execute(Completion)} without waiting for the response, and call
+ * {@link Completion#success} or {@link Completion#failure} exactly once when the response arrives, usually in the
+ * callback of the client. Response time is measured by locust4j, from the call of execute to the completion.
+ *
+ * Each user keeps at most {@link #getMaxInFlight()} requests in flight, it waits for a completion before starting
+ * more requests. Rate limiters apply to the starts of requests, as they do to {@link AbstractTask#execute()}.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public abstract class AbstractAsyncTask extends AbstractTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractAsyncTask.class);
+
+    /**
+     * How long does a stopping user wait for its requests in flight.
+     */
+    private static final long DRAIN_TIMEOUT = 1000;
+
+    /**
+     * Permits of requests in flight of the current user, the task instance is shared by users.
+     */
+    private final ThreadLocal<Semaphore> inFlight = new ThreadLocal<>();
+
+    /**
+     * Get the max number of requests in flight of each user.
+     *
+     * @return the max number, at least 1
+     */
+    public abstract int getMaxInFlight();
+
+    /**
+     * Start a request without waiting for its response, and complete it later.
+     *
+     * @param completion complete it when the request finishes
+     * @throws Exception if the request fails to start, it's completed as an unknown failure
+     */
+    public abstract void execute(Completion completion) throws Exception;
+
+    /**
+     * Get the permits of the current thread. They are created by {@link #run()} for a user, or on first use when
+     * the task is executed by a task set or by the open model.
+     */
+    private Semaphore getPermits() {
+        Semaphore permits = this.inFlight.get();
+        if (null == permits) {
+            permits = new Semaphore(Math.max(1, this.getMaxInFlight()));
+            this.inFlight.set(permits);
+        }
+        return permits;
+    }
+
+    @Override
+    public final void execute() throws Exception {
+        Semaphore permits = this.getPermits();
+        permits.acquire();
+        Completion completion = new Completion(permits);
+        try {
+            this.execute(completion);
+        } catch (Exception ex) {
+            completion.release();
+            throw ex;
+        }
+    }
+
+    @Override
+    public void run() {
+        Semaphore permits = new Semaphore(Math.max(1, this.getMaxInFlight()));
+        this.inFlight.set(permits);
+        try {
+            super.run();
+        } finally {
+            this.inFlight.remove();
+        }
+    }
+
+    @Override
+    void beforeStop() {
+        // wait for the requests in flight, before onStop closes the client
+        Semaphore permits = this.inFlight.get();
+        if (null == permits) {
+            return;
+        }
+        int maxInFlight = Math.max(1, this.getMaxInFlight());
+        boolean interrupted = Thread.interrupted();
+        try {
+            if (!permits.tryAcquire(maxInFlight, DRAIN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                logger.warn("Requests of task {} are still in flight when it stops", this.getName());
+            }
+        } catch (InterruptedException ex) {
+            interrupted = true;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A {@link Completion} records the result of a request started by {@link #execute(Completion)}, and allows the
+     * user to start another request.
+     *
+     * @since 2.1.0
+     */
+    public static final class Completion {
+
+        private final Semaphore permits;
+        private final long startTime;
+        private final AtomicBoolean completed = new AtomicBoolean(false);
+
+        private Completion(Semaphore permits) {
+            this.permits = permits;
+            long startTime = Clock.stopwatch();
+            if (Stats.getInstance().isCoordinatedOmissionCorrected()) {
+                // count from the scheduled time, the callback thread doesn't know the schedule of this thread
+                startTime -= AbstractRateLimiter.pollScheduleDelay();
+            }
+            this.startTime = startTime;
+        }
+
+        /**
+         * @return response time in millis since the request started
+         */
+        public long getElapsedTime() {
+            return Clock.elapsedMillis(this.startTime);
+        }
+
+        private boolean release() {
+            if (!this.completed.compareAndSet(false, true)) {
+                logger.error("The request has been completed, it can't be completed again");
+                return false;
+            }
+            this.permits.release();
+            return true;
+        }
+
+        public void success(String requestType, String name, long contentLength) {
+            long responseTime = this.getElapsedTime();
+            if (this.release()) {
+                Locust.getInstance().recordSuccess(requestType, name, responseTime, contentLength);
+            }
+        }
+
+        public void failure(String requestType, String name, String error) {
+            long responseTime = this.getElapsedTime();
+            if (this.release()) {
+                Locust.getInstance().recordFailure(requestType, name, responseTime, error);
+            }
+        }
+
+        public void success(Endpoint endpoint, long contentLength) {
+            long responseTime = this.getElapsedTime();
+            if (this.release()) {
+                endpoint.success(responseTime, contentLength);
+            }
+        }
+
+        public void failure(Endpoint endpoint, String error) {
+            long responseTime = this.getElapsedTime();
+            if (this.release()) {
+                endpoint.failure(responseTime, error);
+            }
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package com.github.myzhan.locust4j;
 
+import java.util.concurrent.TimeUnit;
+
+import com.github.myzhan.locust4j.ratelimit.AbstractRateLimiter;
 import com.github.myzhan.locust4j.runtime.Runner;
 import com.github.myzhan.locust4j.runtime.RunnerState;
+import com.github.myzhan.locust4j.runtime.Worker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,6 +26,13 @@ public abstract class AbstractTask implements Runnable {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractTask.class);
 
+    /**
+     * Millis to wait before trying again, when a rate limiter gives no permit because it's stopped.
+     */
+    private static final long STOPPED_RATE_LIMITER_BACKOFF = 10;
+
+    private volatile AbstractRateLimiter rateLimiter;
+
     /**
      * When locust runs multiple tasks, their weights are used to allocate threads.
      * When locust runs one task set with all the tasks, their weights are used to invoke "execute" method, which means
@@ -63,6 +74,60 @@ public abstract class AbstractTask implements Runnable {
 
     }
 
+    /**
+     * Limit the rate of this task, apart from the global rate limiter set by
+     * {@link Locust#setRateLimiter(AbstractRateLimiter)}. The runner starts and stops it with the global one.
+     *
+     * When the task is added to a {@link com.github.myzhan.locust4j.taskset.WeighingTaskSet}, it limits the rate of
+     * this task in the task set.
+     *
+     * @param rateLimiter builtin or custom rate limiter, or null to remove it
+     * @since 2.1.0
+     */
+    public void setRateLimiter(AbstractRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * @return the rate limiter of this task, or null
+     * @since 2.1.0
+     */
+    public AbstractRateLimiter getRateLimiter() {
+        return this.rateLimiter;
+    }
+
+    /**
+     * Block and wait for the next permit of the global rate limiter and this task's rate limiter.
+     *
+     * @return false if any rate limiter is stopped
+     * @throws InterruptedException if the runner stops this thread
+     */
+    private boolean acquirePermits() throws InterruptedException {
+        if (Locust.getInstance().isRateLimitEnabled()
+            && !Locust.getInstance().getRateLimiter().tryAcquire(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+        return null == this.rateLimiter || this.rateLimiter.tryAcquire(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Wait a moment after a rate limiter gives no permit because it's stopped, instead of spinning until it's started
+     * or the worker is stopped.
+     *
+     * @throws InterruptedException if the runner stops this thread
+     * @since 2.1.0
+     */
+    protected static void backOffFromStoppedRateLimiter() throws InterruptedException {
+        Thread.sleep(STOPPED_RATE_LIMITER_BACKOFF);
+    }
+
+    /**
+     * Called before {@link #onStop()} when the test loop stopped.
+     */
+    void beforeStop() {
+
+    }
+
     @Override
     public void run() {
         Runner runner = Locust.getInstance().getRunner();
@@ -81,19 +146,16 @@ public abstract class AbstractTask implements Runnable {
                     return;
                 }
 
-                if (Thread.currentThread().isInterrupted()) {
+                if (Thread.currentThread().isInterrupted() || Worker.isCurrentStopped()) {
+                    // this worker is despawned, even if the interrupt is swallowed
                     return;
                 }
 
                 try {
-                    if (Locust.getInstance().isRateLimitEnabled()) {
-                        // block and wait for next permit
-                        boolean blocked = Locust.getInstance().getRateLimiter().acquire();
-                        if (!blocked) {
-                            this.execute();
-                        }
-                    } else {
+                    if (this.acquirePermits()) {
                         this.execute();
+                    } else {
+                        backOffFromStoppedRateLimiter();
                     }
                 } catch (InterruptedException ex) {
                     return;
@@ -108,6 +170,7 @@ public abstract class AbstractTask implements Runnable {
                 }
             }
         } finally {
+            beforeStop();
             onStop();
         }
     }
@@ -1,18 +1,22 @@
 package com.github.myzhan.locust4j;
 
 import com.github.myzhan.locust4j.ratelimit.AbstractRateLimiter;
+import com.github.myzhan.locust4j.ratelimit.PacingRateLimiter;
 import com.github.myzhan.locust4j.ratelimit.StableRateLimiter;
 import com.github.myzhan.locust4j.rpc.Client;
+import com.github.myzhan.locust4j.rpc.NioClient;
 import com.github.myzhan.locust4j.rpc.ZeromqClient;
+import com.github.myzhan.locust4j.runtime.ArrivalRateProfile;
 import com.github.myzhan.locust4j.runtime.Runner;
-import com.github.myzhan.locust4j.stats.RequestFailure;
-import com.github.myzhan.locust4j.stats.RequestSuccess;
+import com.github.myzhan.locust4j.stats.Endpoint;
+import com.github.myzhan.locust4j.stats.ResponseTimeHistogram;
 import com.github.myzhan.locust4j.stats.Stats;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.ListIterator;
 
+import com.github.myzhan.locust4j.utils.Clock;
 import com.github.myzhan.locust4j.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,11 +31,27 @@ public class Locust {
 
     private static final Logger logger = LoggerFactory.getLogger(Locust.class);
 
+    /**
+     * Talk to the master with jeromq, it's the default transport.
+     */
+    public static final String TRANSPORT_ZEROMQ = "zeromq";
+
+    /**
+     * Talk to the master with {@link NioClient}, which speaks the zeromq protocol over a plain socket channel.
+     */
+    public static final String TRANSPORT_NIO = "nio";
+
     private String masterHost = Utils.getSystemEnvWithDefault("LOCUST_MASTER_NODE_HOST", "127.0.0.1");
     private int masterPort = Integer.parseInt(Utils.getSystemEnvWithDefault("LOCUST_MASTER_NODE_PORT", "5557"));
+    private String transport = Utils.getSystemEnvWithDefault("LOCUST4J_TRANSPORT", TRANSPORT_ZEROMQ);
+    private Client rpcClient;
     private boolean started = false;
     private boolean verbose = false;
     private boolean rateLimitEnabled;
+    private boolean virtualThreadsEnabled = false;
+    private ArrivalRateProfile arrivalRateProfile;
+    private int maxConcurrency = 0;
+    private long heartbeatInterval = Runner.DEFAULT_HEARTBEAT_INTERVAL;
     private AbstractRateLimiter rateLimiter;
     private Runner runner;
 
@@ -69,6 +89,31 @@ public class Locust {
         this.masterPort = masterPort;
     }
 
+    /**
+     * Set the transport to talk to the master with, which is {@link #TRANSPORT_ZEROMQ} by default, or set by the
+     * environment variable LOCUST4J_TRANSPORT.
+     *
+     * @param transport {@link #TRANSPORT_ZEROMQ} or {@link #TRANSPORT_NIO}, it must be called before run()
+     * @since 2.1.0
+     */
+    public void setTransport(String transport) {
+        if (!TRANSPORT_ZEROMQ.equals(transport) && !TRANSPORT_NIO.equals(transport)) {
+            throw new IllegalArgumentException("Unknown transport: " + transport);
+        }
+        this.transport = transport;
+    }
+
+    /**
+     * Talk to the master with a client of your own, like {@link com.github.myzhan.locust4j.rpc.InProcessClient} for
+     * a master in the same process. The master host, port and transport are ignored.
+     *
+     * @param rpcClient the client, it must be called before run()
+     * @since 2.1.0
+     */
+    public void setRPCClient(Client rpcClient) {
+        this.rpcClient = rpcClient;
+    }
+
     /**
      * Limit max PRS that locust4j can generator.
      *
@@ -111,6 +156,122 @@ public class Locust {
         return this.rateLimitEnabled;
     }
 
+    /**
+     * Run each user on a virtual thread instead of a platform thread, so that one worker can simulate a lot more
+     * I/O-bound users. It requires JDK 21 or newer, otherwise locust4j falls back to platform threads.
+     *
+     * A virtual thread is pinned to its carrier thread when it blocks inside a synchronized block or native code,
+     * and pinned users make the carrier threads a bottleneck. Run the JVM with -Djdk.tracePinnedThreads=full to print
+     * the stacktrace where a virtual thread blocks while pinned, or record the jdk.VirtualThreadPinned event with JFR.
+     * The built-in rate limiters wait with {@link java.util.concurrent.locks.Condition} or park, so waiting for permits
+     * doesn't pin, custom rate limiters should avoid Object.wait() for the same reason.
+     *
+     * @param virtualThreadsEnabled set true to run users on virtual threads, it must be called before run()
+     * @since 2.1.0
+     */
+    public void setVirtualThreadsEnabled(boolean virtualThreadsEnabled) {
+        this.virtualThreadsEnabled = virtualThreadsEnabled;
+    }
+
+    /**
+     * @return are users running on virtual threads?
+     * @since 2.1.0
+     */
+    public boolean isVirtualThreadsEnabled() {
+        return this.virtualThreadsEnabled;
+    }
+
+    /**
+     * Run tasks in the open model, which starts executions of tasks at an arrival rate, no matter how long they take.
+     * Otherwise, each user runs a task back to back, and slow responses lower the load.
+     *
+     * The user count from the master is used as the arrival rate, in executions per second. Executions run on at most
+     * maxConcurrency threads, an execution that can't start on time is counted as a missed arrival and logged, it's
+     * not recorded as a failure, see {@link #getMissedArrivals()}. Rate limiters, onStart and onStop are not used in
+     * the open model.
+     *
+     * @param maxConcurrency max number of task executions in progress, it must be called before run()
+     * @since 2.1.0
+     */
+    public void setOpenModel(int maxConcurrency) {
+        this.setOpenModel(null, maxConcurrency);
+    }
+
+    /**
+     * Run tasks in the open model, and take the arrival rate from a local profile instead of the master.
+     *
+     * @param arrivalRateProfile the arrival rate profile
+     * @param maxConcurrency     max number of task executions in progress, it must be called before run()
+     * @see #setOpenModel(int)
+     * @since 2.1.0
+     */
+    public void setOpenModel(ArrivalRateProfile arrivalRateProfile, int maxConcurrency) {
+        this.arrivalRateProfile = arrivalRateProfile;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Record response times from the time requests were scheduled by the rate limiter, instead of the time they
+     * actually started, so a slow response that delays the following requests of the same thread is not hidden.
+     * It works with rate limiters that schedule permits, like {@link PacingRateLimiter}.
+     *
+     * @param corrected        correct response times or not
+     * @param expectedInterval if positive, also record the samples that would have been sent at this interval while
+     *                         a slow request was in flight, like HdrHistogram does, in millis. They are counted in
+     *                         response times only, not in the number of requests
+     * @since 2.1.0
+     */
+    public void setCoordinatedOmissionCorrection(boolean corrected, long expectedInterval) {
+        Stats.getInstance().setCoordinatedOmissionCorrection(corrected, expectedInterval);
+    }
+
+    /**
+     * Set the interval of reporting stats to the master, finer reports show short spikes in the charts of locust,
+     * at the cost of more messages to the master.
+     *
+     * @param reportInterval interval in millis, 3000 by default
+     * @since 2.1.0
+     */
+    public void setReportInterval(long reportInterval) {
+        Stats.getInstance().setReportInterval(reportInterval);
+    }
+
+    /**
+     * Set the interval of heartbeats to the master.
+     *
+     * @param heartbeatInterval interval in millis, 1000 by default, it must be called before run()
+     * @since 2.1.0
+     */
+    public void setHeartbeatInterval(long heartbeatInterval) {
+        if (heartbeatInterval <= 0) {
+            throw new IllegalArgumentException("Heartbeat interval must be positive");
+        }
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    /**
+     * Stream stats in process, in windows shorter than the report interval, like 100 millis. Windows are passed to
+     * listeners added by {@link Stats#addWindowListener(com.github.myzhan.locust4j.stats.StatsWindowListener)}
+     * and don't send anything to the master.
+     *
+     * @param windowInterval interval in millis, or 0 to close windows only when it's time to report
+     * @since 2.1.0
+     */
+    public void setStatsWindowInterval(long windowInterval) {
+        Stats.getInstance().setWindowInterval(windowInterval);
+    }
+
+    /**
+     * Set how often the cached clock used by stats is updated, see {@link Clock}. Response times measured
+     * with {@link Clock#stopwatch()} are not affected.
+     *
+     * @param millis resolution in millis, which is {@link Clock#DEFAULT_RESOLUTION} by default
+     * @since 2.1.0
+     */
+    public void setClockResolution(long millis) {
+        Clock.setResolution(millis);
+    }
+
     /**
      * @return is it verbose?
      * @since 1.0.2
@@ -131,6 +292,18 @@ public class Locust {
         this.verbose = v;
     }
 
+    /**
+     * Get the number of executions that couldn't start on time in the open model, because all the executors were
+     * busy. A growing number means this process can't generate the load, raise maxConcurrency or add workers.
+     *
+     * @return missed arrivals of the running or the last test, 0 if the open model isn't used
+     * @since 2.1.0
+     */
+    public long getMissedArrivals() {
+        Runner runner = this.runner;
+        return null == runner ? 0 : runner.getMissedArrivals();
+    }
+
     protected void setRunner(Runner runner) {
         this.runner = runner;
     }
@@ -178,15 +351,27 @@ public class Locust {
         runner = new Runner();
         runner.setStats(Stats.getInstance());
 
-        Client client = new ZeromqClient(masterHost, masterPort, runner.getNodeID());
-        runner.setRPCClient(client);
+        runner.setRPCClient(null != rpcClient ? rpcClient : newRPCClient(runner.getNodeID()));
         runner.setTasks(tasks);
+        runner.setVirtualThreadsEnabled(virtualThreadsEnabled);
+        runner.setOpenModel(arrivalRateProfile, maxConcurrency);
+        runner.setHeartbeatInterval(heartbeatInterval);
         runner.getReady();
         addShutdownHook();
 
         this.started = true;
     }
 
+    private Client newRPCClient(String nodeID) {
+        if (TRANSPORT_NIO.equals(transport)) {
+            return new NioClient(masterHost, masterPort, nodeID);
+        }
+        if (!TRANSPORT_ZEROMQ.equals(transport)) {
+            logger.warn("Unknown transport {}, use {} instead", transport, TRANSPORT_ZEROMQ);
+        }
+        return new ZeromqClient(masterHost, masterPort, nodeID);
+    }
+
     /**
      * Run tasks without connecting to master.
      *
@@ -265,13 +450,36 @@ public class Locust {
      * @since 1.0.0
      */
     public void recordSuccess(String requestType, String name, long responseTime, long contentLength) {
-        RequestSuccess success = new RequestSuccess();
-        success.setRequestType(requestType);
-        success.setName(name);
-        success.setResponseTime(responseTime);
-        success.setContentLength(contentLength);
-        Stats.getInstance().getReportSuccessQueue().offer(success);
-        Stats.getInstance().wakeMeUp();
+        Stats.getInstance().recordSuccess(requestType, name, responseTime, contentLength);
+    }
+
+    /**
+     * Add successful records of a batch at once, like a pipeline of commands timed by the client.
+     *
+     * @param requestType   locust use request type to classify test results
+     * @param name          like request type, used by locust to classify test results
+     * @param responseTimes response times in millis, only the first count ones are used
+     * @param count         number of requests in the batch
+     * @param contentLength content length of the whole batch in bytes
+     * @since 2.1.0
+     */
+    public void recordSuccessBatch(String requestType, String name, long[] responseTimes, int count,
+                                   long contentLength) {
+        Stats.getInstance().recordSuccessBatch(requestType, name, responseTimes, count, contentLength);
+    }
+
+    /**
+     * Add successful records of a batch at once, which have been counted into a histogram by the client.
+     *
+     * @param requestType   locust use request type to classify test results
+     * @param name          like request type, used by locust to classify test results
+     * @param responseTimes response times of the batch, it can be cleared and reused after this call returns
+     * @param contentLength content length of the whole batch in bytes
+     * @since 2.1.0
+     */
+    public void recordSuccessBatch(String requestType, String name, ResponseTimeHistogram responseTimes,
+                                   long contentLength) {
+        Stats.getInstance().recordSuccessBatch(requestType, name, responseTimes, contentLength);
     }
 
     /**
@@ -284,13 +492,20 @@ public class Locust {
      * @since 1.0.0
      */
     public void recordFailure(String requestType, String name, long responseTime, String error) {
-        RequestFailure failure = new RequestFailure();
-        failure.setRequestType(requestType);
-        failure.setName(name);
-        failure.setResponseTime(responseTime);
-        failure.setError(error);
-        Stats.getInstance().getReportFailureQueue().offer(failure);
-        Stats.getInstance().wakeMeUp();
+        Stats.getInstance().recordFailure(requestType, name, responseTime, error);
+    }
+
+    /**
+     * Get the handle of an endpoint, which records successes and failures without looking up stats entry by
+     * request type and name. Get it once and keep it, like in a field of task.
+     *
+     * @param requestType locust use request type to classify test results
+     * @param name        like request type, used by locust to classify test results
+     * @return the handle of endpoint
+     * @since 2.1.0
+     */
+    public Endpoint endpoint(String requestType, String name) {
+        return Stats.getInstance().endpoint(requestType, name);
     }
 
     /**
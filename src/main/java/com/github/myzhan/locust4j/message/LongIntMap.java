@@ -1,32 +1,177 @@
 package com.github.myzhan.locust4j.message;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.msgpack.core.MessagePacker;
 
 /**
+ * A map from long to int, which is backed by primitive arrays with open addressing, so counting doesn't box any key
+ * or value.
+ *
+ * Values only grow by {@link #add(long)} and {@link #merge(LongIntMap)}, a slot with zero value is an empty slot.
+ *
  * @author vrajat
  */
 public class LongIntMap {
-    protected Map<Long, Integer> internalStore;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int shift;
 
     public LongIntMap() {
-        internalStore = new HashMap<>(16);
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity initial capacity, which is rounded up to a power of two
+     */
+    public LongIntMap(int capacity) {
+        int realCapacity = Math.max(2, Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1);
+        this.keys = new long[realCapacity];
+        this.values = new int[realCapacity];
+        this.shift = 64 - Integer.numberOfTrailingZeros(realCapacity);
+    }
+
+    private int slotOf(long k) {
+        // fibonacci hashing spreads sequential keys like timestamps
+        return (int)((k * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private int findSlot(long k) {
+        int mask = keys.length - 1;
+        int slot = slotOf(k);
+        while (values[slot] != 0 && keys[slot] != k) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public Integer get(long k) {
+        int slot = findSlot(k);
+        if (values[slot] == 0) {
+            return null;
+        }
+        return values[slot];
+    }
+
+    public void add(long k) {
+        add(k, 1);
+    }
+
+    /**
+     * Increase the value of k in place.
+     *
+     * @param k     the key
+     * @param delta a positive delta
+     * @throws IllegalArgumentException if delta isn't positive, since a zero value means an empty slot
+     */
+    public void add(long k, int delta) {
+        if (delta <= 0) {
+            throw new IllegalArgumentException("delta must be positive");
+        }
+        int slot = findSlot(k);
+        if (values[slot] == 0) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                resize(keys.length << 1);
+                slot = findSlot(k);
+            }
+            keys[slot] = k;
+            size++;
+        }
+        values[slot] += delta;
+    }
+
+    public void merge(LongIntMap other) {
+        for (int slot = other.nextSlot(0); slot >= 0; slot = other.nextSlot(slot + 1)) {
+            add(other.keys[slot], other.values[slot]);
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldValues[slot] != 0) {
+                int newSlot = findSlot(oldKeys[slot]);
+                keys[newSlot] = oldKeys[slot];
+                values[newSlot] = oldValues[slot];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
     }
 
-    public Integer get(Long k) {
-        return internalStore.get(k);
+    /**
+     * Remove all the mappings, but keep the arrays for reuse.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(values, 0);
+            size = 0;
+        }
     }
 
-    public void add(Long k) {
-        if (internalStore.containsKey(k)) {
-            internalStore.put(k, internalStore.get(k) + 1);
-        } else {
-            internalStore.put(k, 1);
+    /**
+     * Find the next occupied slot, iterate over the map without creating entries like this:
+     * <pre>
+     * for (int slot = map.nextSlot(0); slot &gt;= 0; slot = map.nextSlot(slot + 1)) {
+     *     long key = map.keyAt(slot);
+     *     int value = map.valueAt(slot);
+     * }
+     * </pre>
+     *
+     * @param from the slot to start from, inclusive
+     * @return the next occupied slot, or -1 if there is none
+     */
+    public int nextSlot(int from) {
+        for (int slot = from; slot < values.length; slot++) {
+            if (values[slot] != 0) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    public int valueAt(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Pack as a msgpack map.
+     *
+     * @param packer the packer to write to
+     * @throws IOException if the packer fails to write
+     */
+    public void pack(MessagePacker packer) throws IOException {
+        packer.packMapHeader(size);
+        for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+            packer.packLong(keys[slot]);
+            packer.packInt(values[slot]);
         }
     }
 
     @Override
     public String toString() {
-        return this.internalStore.toString();
+        StringBuilder sb = new StringBuilder("{");
+        for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(keys[slot]).append('=').append(values[slot]);
+        }
+        return sb.append('}').toString();
     }
 }
@@ -1,113 +1,273 @@
 package com.github.myzhan.locust4j.message;
 
 import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.msgpack.core.MessageBufferPacker;
 import org.msgpack.core.MessageFormat;
 import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePackException;
 import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.ValueType;
 
 /**
  * @author vrajat
  */
 public class Message {
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
     private final String type;
-    private final Map<String, Object> data;
+    private Map<String, Object> data;
     private String version;
     private final String nodeID;
     private static final String TYPE_CLIENT_READY = "client_ready";
 
+    /**
+     * Data of a received message stays packed in this buffer until it's read.
+     */
+    private final ByteBuffer dataBuffer;
+
+    /**
+     * Bytes of a message decoded from bytes, which are sent as they are.
+     */
+    private final byte[] bytes;
+
     public Message(String type, Map<String, Object> data, String version, String nodeID) {
         this.type = type;
         this.data = data;
         this.version = version;
         this.nodeID = nodeID;
+        this.dataBuffer = null;
+        this.bytes = null;
     }
 
+    /**
+     * A message encoded already, {@link #getBytes()} returns the bytes as they are.
+     */
+    Message(String type, Map<String, Object> data, String nodeID, byte[] bytes) {
+        this.type = type;
+        this.data = data;
+        this.nodeID = nodeID;
+        this.dataBuffer = null;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Decode a message, {@link #getBytes()} returns the same bytes without encoding the message again.
+     *
+     * @param bytes packed message
+     * @throws IOException if the message is malformed
+     */
     public Message(byte[] bytes) throws IOException {
-        MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(bytes);
+        this(ByteBuffer.wrap(bytes), bytes);
+    }
+
+    /**
+     * Decode a message without copying the buffer, only the type and node ID are decoded eagerly.
+     * Data is decoded when it's read by {@link #getData()} or {@link #get(String)}, so the buffer must not be
+     * modified after this call.
+     *
+     * @param buffer packed message, from its position to its limit
+     * @throws IOException if the message is malformed
+     * @since 2.1.0
+     */
+    public Message(ByteBuffer buffer) throws IOException {
+        this(buffer, null);
+    }
+
+    private Message(ByteBuffer buffer, byte[] bytes) throws IOException {
+        this.bytes = bytes;
+        ByteBuffer message = buffer.slice();
+        MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(message);
 
         int arrayHeader = unpacker.unpackArrayHeader();
         this.type = unpacker.unpackString();
 
-        // unpack data
-        if (unpacker.getNextFormat() != MessageFormat.NIL) {
-            this.data = Message.unpackMap(unpacker);
-        } else {
-            unpacker.unpackNil();
-            this.data = null;
+        // skip data, which also checks that it's well-formed
+        int dataOffset = (int)unpacker.getTotalReadBytes();
+        ValueType dataType = unpacker.getNextFormat().getValueType();
+        if (dataType != ValueType.MAP && dataType != ValueType.NIL) {
+            throw new IOException("Message received unsupported type of data: " + dataType);
         }
-        if (unpacker.getNextFormat() != MessageFormat.NIL) {
-            this.nodeID = unpacker.unpackString();
+        int dataLength;
+        try {
+            unpacker.skipValue();
+            dataLength = (int)unpacker.getTotalReadBytes() - dataOffset;
+
+            if (unpacker.getNextFormat() != MessageFormat.NIL) {
+                this.nodeID = unpacker.unpackString();
+            } else {
+                unpacker.unpackNil();
+                this.nodeID = null;
+            }
+        } catch (MessagePackException ex) {
+            throw new IOException("Message received is malformed", ex);
+        } finally {
+            unpacker.close();
+        }
+
+        if (dataType == ValueType.NIL) {
+            this.dataBuffer = null;
+            this.data = null;
         } else {
-            unpacker.unpackNil();
-            this.nodeID = null;
+            // cast to Buffer, ByteBuffer doesn't override these methods before JDK 9
+            ((Buffer)message).position(dataOffset);
+            ((Buffer)message).limit(dataOffset + dataLength);
+            this.dataBuffer = message.slice();
         }
-        unpacker.close();
     }
 
+    /**
+     * Unpack a map with string keys, other types of keys are converted to strings, and nil keys are dropped.
+     *
+     * @param unpacker the unpacker
+     * @return the map
+     * @throws IOException if the map is malformed
+     */
     public static Map<String, Object> unpackMap(MessageUnpacker unpacker) throws IOException {
         int mapSize = unpacker.unpackMapHeader();
-        Map<String, Object> result = new HashMap<>(6);
+        Map<String, Object> result = new HashMap<>(Math.max(6, mapSize * 4 / 3 + 1));
         while (mapSize > 0) {
-            String key = null;
             // unpack key
-            if (unpacker.getNextFormat() == MessageFormat.NIL) {
-                unpacker.unpackNil();
-            } else {
-                key = unpacker.unpackString();
-            }
+            Object key = unpackValue(unpacker);
             // unpack value
-            MessageFormat messageFormat = unpacker.getNextFormat();
-            Object value;
-
-            switch (messageFormat.getValueType()) {
-                case BOOLEAN:
-                    value = unpacker.unpackBoolean();
-                    break;
-                case FLOAT:
-                    value = unpacker.unpackFloat();
-                    break;
-                case INTEGER:
-                    value = unpacker.unpackInt();
-                    break;
-                case NIL:
-                    value = null;
-                    unpacker.unpackNil();
-                    break;
-                case STRING:
-                    value = unpacker.unpackString();
-                    break;
-                case MAP:
-                    value = unpackMap(unpacker);
-                    break;
-                default:
-                    throw new IOException("Message received unsupported type: " + messageFormat.getValueType());
-            }
+            Object value = unpackValue(unpacker);
             if (null != key) {
-                result.put(key, value);
+                result.put(key instanceof byte[] ? new String((byte[])key, UTF_8) : key.toString(), value);
             }
             mapSize--;
         }
         return result;
     }
 
+    /**
+     * Unpack any msgpack value.
+     * <ul>
+     * <li>integers are unpacked as Integer if they fit, otherwise Long or BigInteger</li>
+     * <li>float32 is unpacked as Float, float64 as Double</li>
+     * <li>arrays are unpacked as List, binaries as byte[], maps as {@link #unpackMap(MessageUnpacker)} does</li>
+     * <li>extension values are unpacked as {@link org.msgpack.value.ExtensionValue}</li>
+     * </ul>
+     *
+     * @param unpacker the unpacker
+     * @return the value
+     * @throws IOException if the value is malformed
+     * @since 2.1.0
+     */
+    public static Object unpackValue(MessageUnpacker unpacker) throws IOException {
+        MessageFormat messageFormat = unpacker.getNextFormat();
+        switch (messageFormat.getValueType()) {
+            case BOOLEAN:
+                return unpacker.unpackBoolean();
+            case FLOAT:
+                if (messageFormat == MessageFormat.FLOAT32) {
+                    return unpacker.unpackFloat();
+                }
+                return unpacker.unpackDouble();
+            case INTEGER:
+                if (messageFormat == MessageFormat.UINT64) {
+                    BigInteger value = unpacker.unpackBigInteger();
+                    if (value.bitLength() < 64) {
+                        return narrow(value.longValue());
+                    }
+                    return value;
+                }
+                return narrow(unpacker.unpackLong());
+            case NIL:
+                unpacker.unpackNil();
+                return null;
+            case STRING:
+                return unpacker.unpackString();
+            case BINARY:
+                return unpacker.readPayload(unpacker.unpackBinaryHeader());
+            case ARRAY:
+                int arraySize = unpacker.unpackArrayHeader();
+                List<Object> list = new ArrayList<>(arraySize);
+                for (int i = 0; i < arraySize; i++) {
+                    list.add(unpackValue(unpacker));
+                }
+                return list;
+            case MAP:
+                return unpackMap(unpacker);
+            default:
+                return unpacker.unpackValue();
+        }
+    }
+
+    private static Object narrow(long value) {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return (int)value;
+        }
+        return value;
+    }
+
     public String getType() {
         return this.type;
     }
 
+    /**
+     * Get all the data, it's decoded at the first call if the message is received.
+     *
+     * @return data, or null
+     */
     public Map<String, Object> getData() {
+        if (null == this.data && null != this.dataBuffer) {
+            try {
+                this.data = unpackMap(MessagePack.newDefaultUnpacker(this.dataBuffer.duplicate()));
+            } catch (IOException ex) {
+                // data has been checked while decoding the message
+                throw new IllegalStateException("Malformed data of message", ex);
+            }
+        }
         return this.data;
     }
 
+    /**
+     * Get a field of data, without decoding other fields if the message is received.
+     *
+     * @param key key of the field
+     * @return value of the field, or null if there is no such field
+     * @since 2.1.0
+     */
+    public Object get(String key) {
+        if (null != this.data || null == this.dataBuffer) {
+            return null == this.data ? null : this.data.get(key);
+        }
+        try {
+            MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(this.dataBuffer.duplicate());
+            int mapSize = unpacker.unpackMapHeader();
+            for (int i = 0; i < mapSize; i++) {
+                if (unpacker.getNextFormat().getValueType() != ValueType.STRING) {
+                    unpacker.skipValue();
+                } else if (key.equals(unpacker.unpackString())) {
+                    return unpackValue(unpacker);
+                }
+                // skip the value of another key
+                unpacker.skipValue();
+            }
+            return null;
+        } catch (IOException ex) {
+            // data has been checked while decoding the message
+            throw new IllegalStateException("Malformed data of message", ex);
+        }
+    }
+
     public String getNodeID() {
         return this.nodeID;
     }
 
     public byte[] getBytes() throws IOException {
+        if (null != this.bytes) {
+            return this.bytes;
+        }
         MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
         Visitor visitor = new Visitor(packer);
         // a message contains three fields, (type & data & nodeID)
@@ -0,0 +1,42 @@
+package com.github.myzhan.locust4j.message;
+
+import java.io.IOException;
+
+import org.msgpack.core.MessagePacker;
+
+/**
+ * A {@link PackedValue} is a value which is packed by msgpack already, {@link Visitor} writes its bytes as they are.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public class PackedValue {
+
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+
+    public PackedValue(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public void writeTo(MessagePacker packer) throws IOException {
+        packer.writePayload(bytes, offset, length);
+    }
+
+    /**
+     * @param dest       the array to copy to
+     * @param destOffset offset in dest
+     * @return count of bytes copied
+     */
+    int copyTo(byte[] dest, int destOffset) {
+        System.arraycopy(bytes, offset, dest, destOffset, length);
+        return length;
+    }
+
+    public int getLength() {
+        return length;
+    }
+}
@@ -0,0 +1,323 @@
+package com.github.myzhan.locust4j.message;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.buffer.MessageBuffer;
+import org.msgpack.core.buffer.MessageBufferOutput;
+
+/**
+ * A {@link ReusableBufferPacker} packs into one growable array, which is kept after {@link #clear()}.
+ *
+ * Unlike {@link org.msgpack.core.MessageBufferPacker}, which allocates a new chunk whenever its buffer is full and
+ * drops all the chunks on clear, packing a message of the same size again allocates nothing but the final copy.
+ *
+ * Values that stats are made of, like headers, integers and ascii strings, are written into the array directly,
+ * in the same formats as {@link MessagePacker} chooses. Others are packed by {@link MessagePacker}.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public class ReusableBufferPacker extends MessagePacker {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final GrowableBufferOutput output;
+
+    public ReusableBufferPacker() {
+        this(new GrowableBufferOutput());
+    }
+
+    private ReusableBufferPacker(GrowableBufferOutput output) {
+        super(output, MessagePack.DEFAULT_PACKER_CONFIG);
+        this.output = output;
+    }
+
+    /**
+     * Flush bytes buffered by {@link MessagePacker}, and make room for the bytes to write directly.
+     */
+    private byte[] reserve(int length) throws IOException {
+        if (output.lent) {
+            flush();
+        }
+        output.ensureCapacity(output.size + length);
+        return output.buffer;
+    }
+
+    private void writeByte(int b) throws IOException {
+        byte[] buffer = reserve(1);
+        buffer[output.size++] = (byte)b;
+    }
+
+    private void writeByteAndShort(int b, int v) throws IOException {
+        byte[] buffer = reserve(3);
+        int i = output.size;
+        buffer[i] = (byte)b;
+        buffer[i + 1] = (byte)(v >>> 8);
+        buffer[i + 2] = (byte)v;
+        output.size = i + 3;
+    }
+
+    private void writeByteAndInt(int b, int v) throws IOException {
+        byte[] buffer = reserve(5);
+        int i = output.size;
+        buffer[i] = (byte)b;
+        buffer[i + 1] = (byte)(v >>> 24);
+        buffer[i + 2] = (byte)(v >>> 16);
+        buffer[i + 3] = (byte)(v >>> 8);
+        buffer[i + 4] = (byte)v;
+        output.size = i + 5;
+    }
+
+    private void writeByteAndLong(int b, long v) throws IOException {
+        byte[] buffer = reserve(9);
+        int i = output.size;
+        buffer[i] = (byte)b;
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[++i] = (byte)(v >>> shift);
+        }
+        output.size = i + 1;
+    }
+
+    @Override
+    public MessagePacker packNil() throws IOException {
+        writeByte(0xc0);
+        return this;
+    }
+
+    @Override
+    public MessagePacker packBoolean(boolean b) throws IOException {
+        writeByte(b ? 0xc3 : 0xc2);
+        return this;
+    }
+
+    @Override
+    public MessagePacker packInt(int r) throws IOException {
+        return packLong(r);
+    }
+
+    @Override
+    public MessagePacker packLong(long v) throws IOException {
+        if (v < -(1L << 5)) {
+            if (v < -(1L << 15)) {
+                if (v < -(1L << 31)) {
+                    writeByteAndLong(0xd3, v);
+                } else {
+                    writeByteAndInt(0xd2, (int)v);
+                }
+            } else if (v < -(1 << 7)) {
+                writeByteAndShort(0xd1, (int)v);
+            } else {
+                byte[] buffer = reserve(2);
+                buffer[output.size] = (byte)0xd0;
+                buffer[output.size + 1] = (byte)v;
+                output.size += 2;
+            }
+        } else if (v < (1 << 7)) {
+            // positive and negative fixint
+            writeByte((int)v);
+        } else if (v < (1L << 16)) {
+            if (v < (1 << 8)) {
+                byte[] buffer = reserve(2);
+                buffer[output.size] = (byte)0xcc;
+                buffer[output.size + 1] = (byte)v;
+                output.size += 2;
+            } else {
+                writeByteAndShort(0xcd, (int)v);
+            }
+        } else if (v < (1L << 32)) {
+            writeByteAndInt(0xce, (int)v);
+        } else {
+            writeByteAndLong(0xcf, v);
+        }
+        return this;
+    }
+
+    @Override
+    public MessagePacker packDouble(double v) throws IOException {
+        writeByteAndLong(0xcb, Double.doubleToRawLongBits(v));
+        return this;
+    }
+
+    @Override
+    public MessagePacker packString(String s) throws IOException {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) >= 0x80) {
+                byte[] bytes = s.getBytes(UTF8);
+                packRawStringHeader(bytes.length);
+                writePayload(bytes, 0, bytes.length);
+                return this;
+            }
+        }
+        packRawStringHeader(length);
+        byte[] buffer = reserve(length);
+        int offset = output.size;
+        for (int i = 0; i < length; i++) {
+            buffer[offset + i] = (byte)s.charAt(i);
+        }
+        output.size = offset + length;
+        return this;
+    }
+
+    @Override
+    public MessagePacker packRawStringHeader(int length) throws IOException {
+        if (length < (1 << 5)) {
+            writeByte(0xa0 | length);
+        } else if (length < (1 << 8)) {
+            byte[] buffer = reserve(2);
+            buffer[output.size] = (byte)0xd9;
+            buffer[output.size + 1] = (byte)length;
+            output.size += 2;
+        } else if (length < (1 << 16)) {
+            writeByteAndShort(0xda, length);
+        } else {
+            writeByteAndInt(0xdb, length);
+        }
+        return this;
+    }
+
+    @Override
+    public MessagePacker packArrayHeader(int length) throws IOException {
+        if (length < 0) {
+            throw new IllegalArgumentException("array size must be >= 0");
+        }
+        if (length < (1 << 4)) {
+            writeByte(0x90 | length);
+        } else if (length < (1 << 16)) {
+            writeByteAndShort(0xdc, length);
+        } else {
+            writeByteAndInt(0xdd, length);
+        }
+        return this;
+    }
+
+    @Override
+    public MessagePacker packMapHeader(int length) throws IOException {
+        if (length < 0) {
+            throw new IllegalArgumentException("map size must be >= 0");
+        }
+        if (length < (1 << 4)) {
+            writeByte(0x80 | length);
+        } else if (length < (1 << 16)) {
+            writeByteAndShort(0xde, length);
+        } else {
+            writeByteAndInt(0xdf, length);
+        }
+        return this;
+    }
+
+    @Override
+    public MessagePacker writePayload(byte[] src, int off, int len) throws IOException {
+        byte[] buffer = reserve(len);
+        System.arraycopy(src, off, buffer, output.size, len);
+        output.size += len;
+        return this;
+    }
+
+    @Override
+    public MessagePacker addPayload(byte[] src, int off, int len) throws IOException {
+        return writePayload(src, off, len);
+    }
+
+    /**
+     * @return count of bytes packed since the last clear
+     * @throws IOException never, the buffer doesn't throw
+     */
+    public int getSize() throws IOException {
+        flush();
+        return output.size;
+    }
+
+    /**
+     * Drop the bytes packed, but keep the buffer for reuse.
+     *
+     * @throws IOException never, the buffer doesn't throw
+     */
+    public void clear() throws IOException {
+        flush();
+        output.size = 0;
+    }
+
+    /**
+     * @return a copy of the bytes packed since the last clear
+     * @throws IOException never, the buffer doesn't throw
+     */
+    public byte[] toByteArray() throws IOException {
+        flush();
+        return Arrays.copyOf(output.buffer, output.size);
+    }
+
+    /**
+     * Copy part of the bytes packed since the last clear, without copying the whole buffer first.
+     *
+     * @param srcOffset  offset in the packed bytes
+     * @param dest       the array to copy to
+     * @param destOffset offset in dest
+     * @param length     count of bytes to copy
+     * @throws IOException never, the buffer doesn't throw
+     */
+    void copyTo(int srcOffset, byte[] dest, int destOffset, int length) throws IOException {
+        flush();
+        if (srcOffset + length > output.size) {
+            throw new IndexOutOfBoundsException("Only " + output.size + " bytes are packed");
+        }
+        System.arraycopy(output.buffer, srcOffset, dest, destOffset, length);
+    }
+
+    private static class GrowableBufferOutput implements MessageBufferOutput {
+
+        private static final int CHUNK_SIZE = 8192;
+
+        private byte[] buffer = new byte[CHUNK_SIZE];
+        private int size;
+
+        /**
+         * Whether the rest of the array is lent to {@link MessagePacker}, which may have buffered bytes in it.
+         */
+        private boolean lent;
+
+        private void ensureCapacity(int minCapacity) {
+            if (minCapacity > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(minCapacity, buffer.length << 1));
+            }
+        }
+
+        @Override
+        public MessageBuffer next(int minimumSize) {
+            // hand out the rest of the array, so the packer asks again only when it's full
+            ensureCapacity(size + Math.max(minimumSize, CHUNK_SIZE));
+            lent = true;
+            return MessageBuffer.wrap(buffer, size, buffer.length - size);
+        }
+
+        @Override
+        public void writeBuffer(int length) {
+            size += length;
+            lent = false;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            ensureCapacity(size + length);
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+
+        @Override
+        public void add(byte[] bytes, int offset, int length) {
+            write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
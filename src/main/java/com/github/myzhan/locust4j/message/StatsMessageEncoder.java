@@ -0,0 +1,86 @@
+package com.github.myzhan.locust4j.message;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link StatsMessageEncoder} encodes stats messages into a reused buffer. The report is packed by stats already,
+ * so its values are written as they are, without visiting the report.
+ *
+ * Only the message header, keys and small values go through the reused buffer. Packed values are copied once, straight
+ * into the array of the message, between the parts of the header.
+ *
+ * It's not thread-safe, each sender thread should have its own encoder.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public class StatsMessageEncoder {
+
+    private static final String TYPE_STATS = "stats";
+
+    private final ReusableBufferPacker packer = new ReusableBufferPacker();
+    private final Visitor visitor = new Visitor(packer);
+    private final List<PackedValue> packedValues = new ArrayList<>(4);
+    private int[] positions = new int[4];
+
+    /**
+     * Encode a stats message, which has the same bytes as new Message("stats", data, null, nodeID) with user_count
+     * put into data, and sends them without encoding again.
+     *
+     * @param data      the report, values are usually {@link PackedValue}
+     * @param userCount number of users
+     * @param nodeID    node ID
+     * @return the encoded message
+     * @throws IOException if the packer fails to write
+     */
+    public Message encode(Map<String, Object> data, int userCount, String nodeID) throws IOException {
+        packer.clear();
+        packedValues.clear();
+        int packedLength = 0;
+        // a message contains three fields, (type & data & nodeID)
+        packer.packArrayHeader(3);
+        packer.packString(TYPE_STATS);
+
+        packer.packMapHeader(data.size() + 1);
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            packer.packString(entry.getKey());
+            Object value = entry.getValue();
+            if (value instanceof PackedValue) {
+                // leave a gap in the header, which is filled when the message is assembled
+                if (packedValues.size() == positions.length) {
+                    positions = Arrays.copyOf(positions, positions.length << 1);
+                }
+                positions[packedValues.size()] = packer.getSize();
+                packedValues.add((PackedValue)value);
+                packedLength += ((PackedValue)value).getLength();
+            } else {
+                visitor.visit(value);
+            }
+        }
+        packer.packString("user_count");
+        packer.packInt(userCount);
+
+        packer.packString(nodeID);
+        return new Message(TYPE_STATS, data, nodeID, assemble(packedLength));
+    }
+
+    private byte[] assemble(int packedLength) throws IOException {
+        int headerLength = packer.getSize();
+        byte[] bytes = new byte[headerLength + packedLength];
+        int from = 0;
+        int to = 0;
+        for (int i = 0; i < packedValues.size(); i++) {
+            int length = positions[i] - from;
+            packer.copyTo(from, bytes, to, length);
+            from = positions[i];
+            to += length;
+            to += packedValues.get(i).copyTo(bytes, to);
+        }
+        packer.copyTo(from, bytes, to, headerLength - from);
+        return bytes;
+    }
+}
@@ -38,6 +38,8 @@ public class Visitor {
             visitList(value);
         } else if (value instanceof LongIntMap) {
             visitRps(value);
+        } else if (value instanceof PackedValue) {
+            visitPacked(value);
         } else {
             throw new IOException("Cannot pack type unknown type:" + value.getClass().getSimpleName());
         }
@@ -89,12 +91,10 @@ public class Visitor {
     }
 
     private void visitRps(Object value) throws IOException {
-        LongIntMap longIntMap = (LongIntMap)value;
-        packer.packMapHeader(longIntMap.internalStore.size());
+        ((LongIntMap)value).pack(packer);
+    }
 
-        for (Map.Entry<Long, Integer> entry : longIntMap.internalStore.entrySet()) {
-            packer.packLong(entry.getKey());
-            packer.packInt(entry.getValue());
-        }
+    private void visitPacked(Object value) throws IOException {
+        ((PackedValue)value).writeTo(packer);
     }
 }
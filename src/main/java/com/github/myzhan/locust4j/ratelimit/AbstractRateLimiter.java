@@ -1,11 +1,48 @@
 package com.github.myzhan.locust4j.ratelimit;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * @author myzhan
  * @since 1.0.3
  */
 public abstract class AbstractRateLimiter {
 
+    /**
+     * How late the last permit of each thread is behind its schedule, in nanos.
+     */
+    private static final ThreadLocal<long[]> scheduleDelay = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    /**
+     * Rate limiters that schedule permits call it when the current thread acquires a permit later than its schedule,
+     * because the thread was busy, like waiting for a slow response.
+     *
+     * @param delay nanos between the scheduled time and the time of the permit
+     * @since 2.1.0
+     */
+    protected static void setScheduleDelay(long delay) {
+        scheduleDelay.get()[0] = delay;
+    }
+
+    /**
+     * Get how late the last permit of the current thread is behind its schedule, and forget it, so it's counted
+     * only once. Only rate limiters that schedule permits, like {@link PacingRateLimiter}, know the delay.
+     *
+     * @return delay in nanos, or 0
+     * @since 2.1.0
+     */
+    public static long pollScheduleDelay() {
+        long[] delay = scheduleDelay.get();
+        long value = delay[0];
+        delay[0] = 0;
+        return value;
+    }
+
     /**
      * rate limiter only works after started.
      */
@@ -18,6 +55,41 @@ public abstract class AbstractRateLimiter {
      */
     public abstract boolean acquire();
 
+    /**
+     * Acquire a permit if it's available right now, never blocks.
+     *
+     * The default implementation falls back to {@link #acquire()}, which may block. Builtin rate limiters override it.
+     *
+     * @return true if a permit is acquired
+     * @since 2.1.0
+     */
+    public boolean tryAcquire() {
+        return !this.acquire();
+    }
+
+    /**
+     * Acquire a permit, waits at most the given time.
+     *
+     * The default implementation falls back to {@link #acquire()}, which may wait longer. Builtin rate limiters
+     * override it.
+     *
+     * @param timeout the max time to wait
+     * @param unit    time unit of timeout
+     * @return true if a permit is acquired, false if it times out or the rate limiter is stopped
+     * @throws InterruptedException if the thread is interrupted, before or while waiting
+     * @since 2.1.0
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        boolean blocked = this.acquire();
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        return !blocked;
+    }
+
     /**
      * Stop the rate limiter.
      */
@@ -0,0 +1,177 @@
+package com.github.myzhan.locust4j.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.myzhan.locust4j.stats.Stats;
+import com.github.myzhan.locust4j.stats.StatsEntry;
+import com.github.myzhan.locust4j.stats.StatsListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link AdaptiveRateLimiter} searches for the max rate that the target sustains, by additive increase and
+ * multiplicative decrease (AIMD).
+ *
+ * Every time stats are reported, it reads the failure ratio and a latency percentile of the requests since the last
+ * report. If they meet the SLO, the rate goes up by a step. Otherwise, the rate is multiplied by the back-off ratio.
+ * The highest rate achieved while meeting the SLO is kept as the max sustainable rate.
+ *
+ * Permits are spaced evenly, like {@link PacingRateLimiter}.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public class AdaptiveRateLimiter extends PacingRateLimiter implements StatsListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveRateLimiter.class);
+
+    /**
+     * The rate is raised only if users achieve most of it, or it would grow while users can't keep up.
+     */
+    private static final double ACHIEVED_RATIO = 0.9;
+
+    private final Stats stats;
+    private final double initialRate;
+    private final double minRate;
+    private final double maxRate;
+    private final double rateStep;
+    private final double backOffRatio;
+    private final double maxFailureRatio;
+    private final double latencyPercentile;
+    private final long maxLatency;
+
+    private volatile double rate;
+    private volatile double maxSustainableRate;
+    private long lastReportTime;
+
+    /**
+     * Creates an {@code AdaptiveRateLimiter} which listens to {@link Stats#getInstance()}.
+     *
+     * @param initialRate       permits per second to begin with.
+     * @param minRate           the rate never backs off below it.
+     * @param maxRate           the rate never goes above it.
+     * @param rateStep          permits per second to add when the SLO is met.
+     * @param backOffRatio      multiply the rate by it when the SLO is breached, like 0.5.
+     * @param maxFailureRatio   the SLO of failures divided by all the requests, like 0.01.
+     * @param latencyPercentile the percentile of response times in the SLO, like 0.95.
+     * @param maxLatency        the SLO of the response time at the percentile, in millis.
+     * @throws IllegalArgumentException if a rate or rateStep isn't positive, minRate &le; initialRate &le; maxRate is
+     *                                  not met, backOffRatio or latencyPercentile isn't in (0, 1), (0, 1] respectively,
+     *                                  or maxFailureRatio is negative
+     */
+    public AdaptiveRateLimiter(double initialRate, double minRate, double maxRate, double rateStep,
+                               double backOffRatio, double maxFailureRatio, double latencyPercentile,
+                               long maxLatency) {
+        this(Stats.getInstance(), initialRate, minRate, maxRate, rateStep, backOffRatio, maxFailureRatio,
+            latencyPercentile, maxLatency);
+    }
+
+    AdaptiveRateLimiter(Stats stats, double initialRate, double minRate, double maxRate, double rateStep,
+                        double backOffRatio, double maxFailureRatio, double latencyPercentile, long maxLatency) {
+        super(checkRates(initialRate, minRate, maxRate));
+        if (!(rateStep > 0)) {
+            throw new IllegalArgumentException("rateStep must be positive");
+        }
+        if (!(backOffRatio > 0 && backOffRatio < 1)) {
+            throw new IllegalArgumentException("backOffRatio must be between 0 and 1, exclusive");
+        }
+        if (!(maxFailureRatio >= 0)) {
+            throw new IllegalArgumentException("maxFailureRatio must not be negative");
+        }
+        if (!(latencyPercentile > 0 && latencyPercentile <= 1)) {
+            throw new IllegalArgumentException("latencyPercentile must be in (0, 1]");
+        }
+        this.stats = stats;
+        this.initialRate = initialRate;
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.rateStep = rateStep;
+        this.backOffRatio = backOffRatio;
+        this.maxFailureRatio = maxFailureRatio;
+        this.latencyPercentile = latencyPercentile;
+        this.maxLatency = maxLatency;
+        this.setRate(initialRate);
+    }
+
+    private static long checkRates(double initialRate, double minRate, double maxRate) {
+        // written as !(x > 0) to reject NaN as well
+        if (!(initialRate > 0) || !(minRate > 0) || !(maxRate > 0)) {
+            throw new IllegalArgumentException("initialRate, minRate and maxRate must be positive");
+        }
+        if (minRate > initialRate || initialRate > maxRate) {
+            throw new IllegalArgumentException("minRate <= initialRate <= maxRate is expected");
+        }
+        return (long)Math.ceil(initialRate);
+    }
+
+    /**
+     * Change the rate, it's kept between minRate and maxRate.
+     */
+    private void setRate(double rate) {
+        rate = Math.min(this.maxRate, Math.max(this.minRate, rate));
+        this.rate = rate;
+        this.setInterval((long)(TimeUnit.SECONDS.toNanos(1) / rate));
+    }
+
+    /**
+     * @return the current rate, in permits per second
+     */
+    public double getRate() {
+        return this.rate;
+    }
+
+    /**
+     * @return the highest rate achieved while meeting the SLO, in requests per second
+     */
+    public double getMaxSustainableRate() {
+        return this.maxSustainableRate;
+    }
+
+    @Override
+    public void start() {
+        synchronized (this) {
+            this.setRate(this.initialRate);
+            this.maxSustainableRate = 0;
+            this.lastReportTime = System.nanoTime();
+        }
+        super.start();
+        this.stats.addListener(this);
+    }
+
+    @Override
+    public void stop() {
+        this.stats.removeListener(this);
+        super.stop();
+        logger.info("The max sustainable rate found by the adaptive rate limiter is {} RPS", this.maxSustainableRate);
+    }
+
+    @Override
+    public synchronized void onReport(StatsEntry total) {
+        long now = System.nanoTime();
+        long elapsed = now - this.lastReportTime;
+        this.lastReportTime = now;
+        long requests = total.getNumRequests() + total.getNumFailures();
+        if (requests == 0 || elapsed <= 0) {
+            return;
+        }
+
+        double achievedRate = requests * (double)TimeUnit.SECONDS.toNanos(1) / elapsed;
+        double failureRatio = total.getNumFailures() / (double)requests;
+        long latency = total.getResponseTimeHistogram().getPercentile(this.latencyPercentile);
+
+        if (failureRatio > this.maxFailureRatio || latency > this.maxLatency) {
+            double rate = Math.max(this.minRate, this.rate * this.backOffRatio);
+            logger.info("SLO is breached at {} RPS, failure ratio is {}, latency is {}ms, back off to {} RPS",
+                achievedRate, failureRatio, latency, rate);
+            this.setRate(rate);
+            return;
+        }
+
+        if (achievedRate > this.maxSustainableRate) {
+            this.maxSustainableRate = achievedRate;
+        }
+        if (achievedRate >= this.rate * ACHIEVED_RATIO) {
+            this.setRate(Math.min(this.maxRate, this.rate + this.rateStep));
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.myzhan.locust4j.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link PacingRateLimiter} spaces permits evenly, instead of giving out all the permits of a period at once like
+ * {@link StableRateLimiter}.
+ *
+ * Each {@link #acquire()} reserves the next free permit time with a CAS on an atomic timestamp, and parks the calling
+ * thread until that time. Waiting threads never share a monitor, and no timer thread is needed. Permits are not saved
+ * up while nobody acquires, so there is no burst after an idle time.
+ *
+ * A permit taken later than its scheduled time tells the delay by {@link #pollScheduleDelay()}, which corrects the
+ * coordinated omission of response times. The schedule begins with the first permit after {@link #start()}, and the
+ * first permit of each thread is late by one interval at most, so the time before a user is spawned isn't counted as
+ * a delay.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public class PacingRateLimiter extends AbstractRateLimiter {
+
+    private static final long NO_PERMIT = Long.MIN_VALUE;
+    private static final long NOT_SCHEDULED = Long.MIN_VALUE;
+
+    private volatile long interval;
+    private final AtomicLong nextPermitTime;
+    private final AtomicBoolean stopped;
+
+    /**
+     * Bumped by each start, a thread whose last permit is of an older generation is taking its first permit.
+     */
+    private volatile long generation = 0;
+    private final ThreadLocal<long[]> generationOfThread = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[] {-1};
+        }
+    };
+
+    public PacingRateLimiter(long maxThreshold) {
+        this(maxThreshold, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param maxThreshold permits given out in each period
+     * @param period       the period
+     * @param unit         time unit of period
+     */
+    public PacingRateLimiter(long maxThreshold, long period, TimeUnit unit) {
+        if (maxThreshold <= 0) {
+            throw new IllegalArgumentException("maxThreshold must be positive");
+        }
+        this.interval = Math.max(1, unit.toNanos(period) / maxThreshold);
+        this.nextPermitTime = new AtomicLong(NOT_SCHEDULED);
+        this.stopped = new AtomicBoolean(true);
+    }
+
+    /**
+     * @return nanos between two permits
+     */
+    public long getInterval() {
+        return this.interval;
+    }
+
+    /**
+     * Change the rate, it takes effect from the next permit.
+     *
+     * @param interval nanos between two permits
+     */
+    protected void setInterval(long interval) {
+        this.interval = Math.max(1, interval);
+    }
+
+    @Override
+    public void start() {
+        nextPermitTime.set(NOT_SCHEDULED);
+        generation++;
+        stopped.set(false);
+    }
+
+    /**
+     * Reserve the next permit time, unless it's too far away or the rate limiter is stopped.
+     *
+     * @param maxDelay the max nanos from now to the permit time
+     * @return the permit time in nanos, which may be in the future, or NO_PERMIT if it's too far away or stopped
+     */
+    protected long reserve(long maxDelay) {
+        while (true) {
+            if (stopped.get()) {
+                return NO_PERMIT;
+            }
+            long now = System.nanoTime();
+            long next = nextPermitTime.get();
+            // the first permit sets up the schedule
+            long scheduled = next == NOT_SCHEDULED ? now : next;
+            // unused permit times in the past are dropped
+            long permitTime = scheduled - now < 0 ? now : scheduled;
+            if (permitTime - now > maxDelay) {
+                return NO_PERMIT;
+            }
+            if (nextPermitTime.compareAndSet(next, permitTime + interval)) {
+                // the permit was scheduled earlier, but nobody was ready to take it
+                long delay = permitTime - scheduled;
+                long[] lastGeneration = generationOfThread.get();
+                if (lastGeneration[0] != generation) {
+                    // the thread wasn't busy before its first permit, it may not even exist
+                    lastGeneration[0] = generation;
+                    delay = Math.min(delay, interval);
+                }
+                setScheduleDelay(delay);
+                return permitTime;
+            }
+        }
+    }
+
+    /**
+     * Acquire a permit, waits until its permit time if necessary.
+     *
+     * @return false if the permit is acquired, true if the rate limiter is stopped or the thread is interrupted while
+     * waiting
+     */
+    @Override
+    public boolean acquire() {
+        long permitTime = reserve(Long.MAX_VALUE);
+        if (permitTime == NO_PERMIT) {
+            return true;
+        }
+        long delay;
+        while ((delay = permitTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, delay);
+            if (Thread.currentThread().isInterrupted()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        return reserve(0) != NO_PERMIT;
+    }
+
+    /**
+     * Acquire a permit if its permit time is within the timeout, and wait until the permit time.
+     * A permit that would come later is not reserved, so it times out without waiting.
+     */
+    @Override
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        long permitTime = reserve(unit.toNanos(timeout));
+        if (permitTime == NO_PERMIT) {
+            return false;
+        }
+        long delay;
+        while ((delay = permitTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, delay);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void stop() {
+        stopped.set(true);
+    }
+
+    @Override
+    public boolean isStopped() {
+        return stopped.get();
+    }
+}
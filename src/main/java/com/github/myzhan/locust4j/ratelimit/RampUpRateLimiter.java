@@ -6,20 +6,19 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A {@link RampUpRateLimiter} distributes permits at a ramp-up rate, in steps.
  * Each {@link #acquire()} blocks until a permit is available.
+ * Threads wait on a {@link Condition} instead of a monitor, so waiting virtual threads don't pin their carriers.
  *
  * @author myzhan
  * @since 1.0.4
  */
 public class RampUpRateLimiter extends AbstractRateLimiter {
 
-    private static final Logger logger = LoggerFactory.getLogger(RampUpRateLimiter.class);
-
     private final long maxThreshold;
     private final AtomicLong nextThreshold;
     private final AtomicLong threshold;
@@ -33,7 +32,8 @@ public class RampUpRateLimiter extends AbstractRateLimiter {
 
     private ScheduledExecutorService bucketUpdater;
     private ScheduledExecutorService thresholdUpdater;
-    private final Object lock = new Object();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition refilled = lock.newCondition();
     private final AtomicBoolean stopped;
 
     /**
@@ -69,7 +69,7 @@ public class RampUpRateLimiter extends AbstractRateLimiter {
                 return thread;
             }
         });
-        thresholdUpdater.scheduleAtFixedRate(new Runnable() {
+        Runnable rampUp = new Runnable() {
             @Override
             public void run() {
                 long nextValue = nextThreshold.get() + rampUpStep;
@@ -82,7 +82,10 @@ public class RampUpRateLimiter extends AbstractRateLimiter {
                 }
                 nextThreshold.set(nextValue);
             }
-        }, 0, rampUpPeriod, rampUpTimeUnit);
+        };
+        // take the first step before the first refill, instead of racing with it
+        rampUp.run();
+        thresholdUpdater.scheduleAtFixedRate(rampUp, rampUpPeriod, rampUpPeriod, rampUpTimeUnit);
 
         bucketUpdater = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
             @Override
@@ -95,9 +98,12 @@ public class RampUpRateLimiter extends AbstractRateLimiter {
         bucketUpdater.scheduleAtFixedRate(new Runnable() {
             @Override
             public void run() {
-                synchronized (lock) {
+                lock.lock();
+                try {
                     threshold.set(nextThreshold.get());
-                    lock.notifyAll();
+                    refilled.signalAll();
+                } finally {
+                    lock.unlock();
                 }
             }
         }, 0, refillPeriod, refillUnit);
@@ -109,23 +115,72 @@ public class RampUpRateLimiter extends AbstractRateLimiter {
     public boolean acquire() {
         long permit = this.threshold.decrementAndGet();
         if (permit < 0) {
-            synchronized (lock) {
-                try {
-                    lock.wait();
-                } catch (InterruptedException ex) {
-                    logger.error("The process of acquiring a permit from rate limiter was interrupted", ex);
-                }
+            lock.lock();
+            try {
+                refilled.await();
+            } catch (InterruptedException ex) {
+                // keep the interrupt status, so the caller knows it's time to quit
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
             }
             return true;
         }
         return false;
     }
 
+    @Override
+    public boolean tryAcquire() {
+        if (stopped.get()) {
+            // no permits before start or after stop, like the other built-in rate limiters
+            return false;
+        }
+        long permit;
+        do {
+            permit = this.threshold.get();
+            if (permit <= 0) {
+                return false;
+            }
+        } while (!this.threshold.compareAndSet(permit, permit - 1));
+        return true;
+    }
+
+    @Override
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (this.tryAcquire()) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!this.tryAcquire()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || stopped.get()) {
+                    return false;
+                }
+                refilled.awaitNanos(remaining);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
     @Override
     public void stop() {
         bucketUpdater.shutdownNow();
         thresholdUpdater.shutdownNow();
-        stopped.set(true);
+        lock.lock();
+        try {
+            stopped.set(true);
+            // wake up threads waiting for permits
+            refilled.signalAll();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
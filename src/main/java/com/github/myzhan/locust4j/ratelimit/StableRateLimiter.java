@@ -6,27 +6,27 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A {@link StableRateLimiter} distributes permits at a configurable rate.
  * Each {@link #acquire()} blocks until a permit is available.
+ * Threads wait on a {@link Condition} instead of a monitor, so waiting virtual threads don't pin their carriers.
  *
  * @author myzhan
  * @since 1.0.3
  */
 public class StableRateLimiter extends AbstractRateLimiter implements Runnable {
 
-    private static final Logger logger = LoggerFactory.getLogger(StableRateLimiter.class);
-
     private final long maxThreshold;
     private final AtomicLong threshold;
     private final long period;
     private final TimeUnit unit;
     private ScheduledExecutorService updateTimer;
     private final AtomicBoolean stopped;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition refilled = lock.newCondition();
 
     public StableRateLimiter(long maxThreshold) {
         this(maxThreshold, 1, TimeUnit.SECONDS);
@@ -57,9 +57,12 @@ public class StableRateLimiter extends AbstractRateLimiter implements Runnable {
     @Override
     public void run() {
         // NOTICE: this method is invoked in a thread pool, make sure it throws no exceptions.
-        synchronized (this) {
+        lock.lock();
+        try {
             this.threshold.set(maxThreshold);
-            this.notifyAll();
+            refilled.signalAll();
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -67,22 +70,71 @@ public class StableRateLimiter extends AbstractRateLimiter implements Runnable {
     public boolean acquire() {
         long permit = this.threshold.decrementAndGet();
         if (permit < 0) {
-            synchronized (this) {
-                try {
-                    this.wait();
-                } catch (InterruptedException ex) {
-                    logger.error("The process of acquiring a permit from rate limiter was interrupted", ex);
-                }
+            lock.lock();
+            try {
+                refilled.await();
+            } catch (InterruptedException ex) {
+                // keep the interrupt status, so the caller knows it's time to quit
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
             }
             return true;
         }
         return false;
     }
 
+    @Override
+    public boolean tryAcquire() {
+        if (stopped.get()) {
+            // no permits before start or after stop, like the other built-in rate limiters
+            return false;
+        }
+        long permit;
+        do {
+            permit = this.threshold.get();
+            if (permit <= 0) {
+                return false;
+            }
+        } while (!this.threshold.compareAndSet(permit, permit - 1));
+        return true;
+    }
+
+    @Override
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (this.tryAcquire()) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!this.tryAcquire()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || stopped.get()) {
+                    return false;
+                }
+                refilled.awaitNanos(remaining);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
     @Override
     public void stop() {
         updateTimer.shutdownNow();
-        stopped.set(true);
+        lock.lock();
+        try {
+            stopped.set(true);
+            // wake up threads waiting for permits
+            refilled.signalAll();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -0,0 +1,92 @@
+package com.github.myzhan.locust4j.rpc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import com.github.myzhan.locust4j.message.Message;
+
+/**
+ * An {@link InProcessClient} talks to its peer in the same process through a pair of lock-free queues, which takes
+ * network cost out of measuring the runner itself, or runs a master and workers in one JVM.
+ *
+ * Messages are still encoded and decoded, as they are over the network. Only one thread receives from a client at a
+ * time, like the receiver of a runner.
+ *
+ * <pre>
+ * InProcessClient worker = new InProcessClient();
+ * InProcessClient master = worker.getPeer();
+ * </pre>
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public class InProcessClient implements Client {
+
+    private final Queue<byte[]> inbound = new ConcurrentLinkedQueue<>();
+    private final InProcessClient peer;
+    private volatile Thread receiver;
+    private volatile boolean closed = false;
+
+    public InProcessClient() {
+        this.peer = new InProcessClient(this);
+    }
+
+    private InProcessClient(InProcessClient peer) {
+        this.peer = peer;
+    }
+
+    /**
+     * @return the other end, messages sent by one end are received by the other
+     */
+    public InProcessClient getPeer() {
+        return peer;
+    }
+
+    @Override
+    public Message recv() throws IOException {
+        byte[] bytes;
+        while (null == (bytes = inbound.poll())) {
+            if (closed) {
+                throw new IOException("The client is closed");
+            }
+            // publish the receiver before checking again, so a sender either sees it or its message is seen
+            receiver = Thread.currentThread();
+            if (inbound.isEmpty() && !closed) {
+                LockSupport.park(this);
+            }
+            receiver = null;
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Interrupted while receiving a message");
+            }
+        }
+        return new Message(bytes);
+    }
+
+    @Override
+    public void send(Message message) throws IOException {
+        if (closed || peer.closed) {
+            throw new IOException("The client is closed");
+        }
+        peer.inbound.add(message.getBytes());
+        peer.wakeUp();
+    }
+
+    private void wakeUp() {
+        Thread waiting = receiver;
+        if (null != waiting) {
+            LockSupport.unpark(waiting);
+        }
+    }
+
+    /**
+     * Close this end, the peer can still receive messages sent before.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        wakeUp();
+    }
+}
@@ -0,0 +1,343 @@
+package com.github.myzhan.locust4j.rpc;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.github.myzhan.locust4j.message.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link NioClient} speaks ZMTP 3.0, the wire protocol of zeromq, over a blocking socket channel, like a dealer
+ * socket with the NULL mechanism. It talks to the router socket of a locust master without a zeromq library, so the
+ * receiver reads frames straight from the socket, and senders write them straight to the socket.
+ *
+ * Besides TCP, it connects to Unix-domain sockets on JDK 16 and later, see {@link #unixDomainSocketAddress(String)}.
+ *
+ * Unlike zeromq, messages are not queued while the connection is down, sending fails instead, and the connection is
+ * made again by the next call.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public class NioClient implements Client {
+
+    private static final Logger logger = LoggerFactory.getLogger(NioClient.class);
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final int FLAG_MORE = 0x01;
+    private static final int FLAG_LONG = 0x02;
+    private static final int FLAG_COMMAND = 0x04;
+
+    private static final int GREETING_LENGTH = 64;
+    private static final int READ_BUFFER_SIZE = 65536;
+
+    /**
+     * Millis to wait before receiving again, after failing to connect.
+     */
+    private static final long RECONNECT_INTERVAL = 1000;
+
+    private final SocketAddress address;
+    private final byte[] identity;
+    private final Object connectLock = new Object();
+    private final Object writeLock = new Object();
+    private final ByteBuffer frameHeader = ByteBuffer.allocate(9);
+    private volatile SocketChannel channel;
+    private volatile boolean closed = false;
+
+    /**
+     * Owned by the receiving thread.
+     */
+    private ByteBuffer readBuffer;
+    private SocketChannel readChannel;
+
+    public NioClient(String host, int port, String nodeID) {
+        this(new InetSocketAddress(host, port), nodeID);
+    }
+
+    /**
+     * @param address address of the master
+     * @param nodeID  node ID, which is the identity of this client
+     */
+    public NioClient(SocketAddress address, String nodeID) {
+        this.address = address;
+        this.identity = nodeID.getBytes();
+        try {
+            this.connect();
+            logger.debug("Locust4j is connected to master({})", address);
+        } catch (IOException ex) {
+            logger.debug("Locust4j isn't connected to master({}), please check your network situation", address, ex);
+        }
+    }
+
+    /**
+     * Create an address of a Unix-domain socket, which is only supported since JDK 16.
+     *
+     * @param path path of the socket file
+     * @return the address
+     * @throws IOException if Unix-domain sockets are not supported by the running JVM
+     */
+    public static SocketAddress unixDomainSocketAddress(String path) throws IOException {
+        try {
+            Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+            return (SocketAddress)addressClass.getMethod("of", String.class).invoke(null, path);
+        } catch (Exception ex) {
+            throw new IOException("Unix-domain sockets are not supported by this JVM", ex);
+        }
+    }
+
+    private SocketChannel connect() throws IOException {
+        synchronized (connectLock) {
+            SocketChannel current = this.channel;
+            if (null != current) {
+                return current;
+            }
+            if (this.closed) {
+                throw new IOException("The client is closed");
+            }
+            SocketChannel newChannel = SocketChannel.open(this.address);
+            try {
+                if (this.address instanceof InetSocketAddress) {
+                    newChannel.socket().setTcpNoDelay(true);
+                }
+                this.handshake(newChannel);
+            } catch (IOException ex) {
+                newChannel.close();
+                throw ex;
+            }
+            this.channel = newChannel;
+            return newChannel;
+        }
+    }
+
+    private void disconnect(SocketChannel broken) {
+        synchronized (connectLock) {
+            if (this.channel == broken) {
+                this.channel = null;
+            }
+        }
+        try {
+            broken.close();
+        } catch (IOException ex) {
+            logger.debug("Error while closing the connection", ex);
+        }
+    }
+
+    private void handshake(SocketChannel channel) throws IOException {
+        // signature, version 3.0 and the NULL mechanism as a client, padded with zeros
+        byte[] greeting = new byte[GREETING_LENGTH];
+        greeting[0] = (byte)0xFF;
+        greeting[8] = 1;
+        greeting[9] = 0x7F;
+        greeting[10] = 3;
+        byte[] mechanism = "NULL".getBytes(ASCII);
+        System.arraycopy(mechanism, 0, greeting, 12, mechanism.length);
+        writeFully(channel, ByteBuffer.wrap(greeting));
+
+        ByteBuffer peerGreeting = ByteBuffer.allocate(GREETING_LENGTH);
+        readFully(channel, peerGreeting);
+        byte[] peer = peerGreeting.array();
+        if ((peer[0] & 0xFF) != 0xFF || (peer[9] & 0x01) == 0 || peer[10] < 3) {
+            throw new IOException("Master doesn't speak ZMTP 3.0 or later");
+        }
+        if (!Arrays.equals(mechanism, Arrays.copyOfRange(peer, 12, 12 + mechanism.length)) || peer[12 + 4] != 0) {
+            throw new IOException("Master doesn't use the NULL security mechanism");
+        }
+
+        ByteBuffer ready = ByteBuffer.allocate(64 + identity.length);
+        putShortString(ready, "READY");
+        putProperty(ready, "Socket-Type", "DEALER".getBytes(ASCII));
+        putProperty(ready, "Identity", identity);
+        ((Buffer)ready).flip();
+        ByteBuffer header = ByteBuffer.allocate(9);
+        putFrameHeader(header, FLAG_COMMAND, ready.remaining());
+        ((Buffer)header).flip();
+        writeFully(channel, header, ready);
+
+        // the master answers with its own READY command, or an ERROR command
+        ((Buffer)header).clear().limit(2);
+        readFully(channel, header);
+        int flags = header.get(0);
+        long size = header.get(1) & 0xFF;
+        if ((flags & FLAG_LONG) != 0) {
+            ((Buffer)header).clear().limit(8);
+            readFully(channel, header);
+            size = header.getLong(0);
+        }
+        if ((flags & FLAG_COMMAND) == 0 || size > READ_BUFFER_SIZE) {
+            throw new IOException("Master doesn't answer with a command");
+        }
+        ByteBuffer command = ByteBuffer.allocate((int)size);
+        readFully(channel, command);
+        ((Buffer)command).flip();
+        String name = getShortString(command);
+        if ("ERROR".equals(name)) {
+            throw new IOException("Master rejected the connection: " + getShortString(command));
+        } else if (!"READY".equals(name)) {
+            throw new IOException("Master answers with an unexpected command: " + name);
+        }
+    }
+
+    private static void putShortString(ByteBuffer buffer, String s) {
+        byte[] bytes = s.getBytes(ASCII);
+        buffer.put((byte)bytes.length).put(bytes);
+    }
+
+    private static String getShortString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.get() & 0xFF];
+        buffer.get(bytes);
+        return new String(bytes, ASCII);
+    }
+
+    private static void putProperty(ByteBuffer buffer, String name, byte[] value) {
+        putShortString(buffer, name);
+        buffer.putInt(value.length).put(value);
+    }
+
+    private static void putFrameHeader(ByteBuffer header, int flags, long size) {
+        if (size < 256) {
+            header.put((byte)flags).put((byte)size);
+        } else {
+            header.put((byte)(flags | FLAG_LONG)).putLong(size);
+        }
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Master closed the connection");
+            }
+        }
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer... buffers) throws IOException {
+        ByteBuffer last = buffers[buffers.length - 1];
+        while (last.hasRemaining()) {
+            channel.write(buffers);
+        }
+    }
+
+    /**
+     * Make sure that the read buffer holds at least n bytes of the channel.
+     */
+    private void fill(SocketChannel channel, int n) throws IOException {
+        if (this.readBuffer.remaining() >= n) {
+            return;
+        }
+        if (this.readBuffer.capacity() < n) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(n, this.readBuffer.capacity() << 1));
+            bigger.put(this.readBuffer);
+            this.readBuffer = bigger;
+        } else {
+            this.readBuffer.compact();
+        }
+        while (this.readBuffer.position() < n) {
+            if (channel.read(this.readBuffer) < 0) {
+                throw new EOFException("Master closed the connection");
+            }
+        }
+        ((Buffer)this.readBuffer).flip();
+    }
+
+    /**
+     * Read frames until the last frame of a message, commands are skipped.
+     *
+     * @return the last frame of a message
+     */
+    private byte[] readMessage(SocketChannel channel) throws IOException {
+        if (channel != this.readChannel) {
+            // bytes left from a broken connection are dropped
+            this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            ((Buffer)this.readBuffer).flip();
+            this.readChannel = channel;
+        }
+        while (true) {
+            this.fill(channel, 2);
+            int flags = this.readBuffer.get();
+            long size;
+            if ((flags & FLAG_LONG) != 0) {
+                this.fill(channel, 8);
+                size = this.readBuffer.getLong();
+            } else {
+                size = this.readBuffer.get() & 0xFF;
+            }
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("Frame is too large: " + size);
+            }
+            this.fill(channel, (int)size);
+            if ((flags & FLAG_COMMAND) != 0 || (flags & FLAG_MORE) != 0) {
+                // skip commands like PING, and leading frames of a multi-part message
+                ((Buffer)this.readBuffer).position(this.readBuffer.position() + (int)size);
+                continue;
+            }
+            byte[] frame = new byte[(int)size];
+            this.readBuffer.get(frame);
+            return frame;
+        }
+    }
+
+    @Override
+    public Message recv() throws IOException {
+        SocketChannel current;
+        try {
+            current = this.connect();
+        } catch (IOException ex) {
+            // don't let the receiver spin while the master is down
+            try {
+                Thread.sleep(RECONNECT_INTERVAL);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while receiving a message");
+            }
+            throw ex;
+        }
+        byte[] bytes;
+        try {
+            bytes = this.readMessage(current);
+        } catch (ClosedByInterruptException ex) {
+            this.disconnect(current);
+            throw new InterruptedIOException("Interrupted while receiving a message");
+        } catch (IOException ex) {
+            this.disconnect(current);
+            throw ex;
+        }
+        return new Message(bytes);
+    }
+
+    @Override
+    public void send(Message message) throws IOException {
+        byte[] bytes = message.getBytes();
+        SocketChannel current = this.connect();
+        try {
+            synchronized (writeLock) {
+                ByteBuffer header = this.frameHeader;
+                ((Buffer)header).clear();
+                putFrameHeader(header, 0, bytes.length);
+                ((Buffer)header).flip();
+                writeFully(current, header, ByteBuffer.wrap(bytes));
+            }
+        } catch (IOException ex) {
+            this.disconnect(current);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        SocketChannel current = this.channel;
+        if (null != current) {
+            this.disconnect(current);
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package com.github.myzhan.locust4j.rpc;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.github.myzhan.locust4j.message.Message;
 import org.slf4j.Logger;
@@ -13,15 +20,43 @@ import org.zeromq.ZMQ;
  *
  * Locust4j only supports zeromq.
  *
+ * Zeromq sockets are not thread-safe, so the dealer socket is owned by a single I/O thread. Other threads put outbound
+ * messages into a queue and take inbound messages from another queue, they never touch or block on the socket.
+ * The I/O thread writes all the queued messages at once, which zeromq coalesces into fewer network writes.
+ *
+ * The I/O thread polls the dealer socket together with an inproc PAIR socket, so a thread that enqueues a message
+ * wakes it up with an empty frame, instead of letting the message wait for the poll timeout. At most one wake-up
+ * frame is in flight, no matter how many messages are enqueued before the I/O thread runs.
+ *
  * @author myzhan
  */
 public class ZeromqClient implements Client {
 
     private static final Logger logger = LoggerFactory.getLogger(ZeromqClient.class);
 
+    /**
+     * Millis between two retries of a message that the dealer socket can't take, senders wake the I/O thread up
+     * otherwise.
+     */
+    private static final long POLL_TIMEOUT = 100;
+
+    private static final String WAKE_UP_ADDRESS = "inproc://locust4j-wake-up";
+    private static final byte[] WAKE_UP_FRAME = new byte[0];
+
     private final ZMQ.Context context = ZMQ.context(1);
     private final String identity;
     private final ZMQ.Socket dealerSocket;
+    private final ZMQ.Socket wakeUpReceiver;
+    /**
+     * Shared by sender threads, so it's guarded by itself.
+     */
+    private final ZMQ.Socket wakeUpSender;
+    private final AtomicBoolean wokenUp = new AtomicBoolean(false);
+    private boolean wakeUpClosed = false;
+    private final Queue<byte[]> outbound = new ConcurrentLinkedQueue<>();
+    private final BlockingQueue<byte[]> inbound = new LinkedBlockingQueue<>();
+    private final Thread ioThread;
+    private volatile boolean closed = false;
 
     public ZeromqClient(String host, int port, String nodeID) {
         this.identity = nodeID;
@@ -33,25 +68,114 @@ public class ZeromqClient implements Client {
         } else {
             logger.debug("Locust4j isn't connected to master({}:{}), please check your network situation", host, port);
         }
+        // an inproc address must be bound before it's connected
+        this.wakeUpReceiver = context.socket(ZMQ.PAIR);
+        this.wakeUpReceiver.bind(WAKE_UP_ADDRESS);
+        this.wakeUpSender = context.socket(ZMQ.PAIR);
+        this.wakeUpSender.connect(WAKE_UP_ADDRESS);
+
+        this.ioThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "locust4j-zeromq-io");
+        this.ioThread.setDaemon(true);
+        this.ioThread.start();
+    }
+
+    private void loop() {
+        ZMQ.Poller poller = context.poller(2);
+        int dealerIndex = poller.register(dealerSocket, ZMQ.Poller.POLLIN);
+        int wakeUpIndex = poller.register(wakeUpReceiver, ZMQ.Poller.POLLIN);
+        byte[] pending = null;
+        try {
+            while (!closed) {
+                // reset before taking messages, so a message enqueued after that wakes the thread up again
+                wokenUp.set(false);
+                // a message that the socket can't take now is kept, and retried in the next round
+                if (null == pending) {
+                    pending = outbound.poll();
+                }
+                while (null != pending && dealerSocket.send(pending, ZMQ.DONTWAIT)) {
+                    pending = outbound.poll();
+                }
+
+                poller.poll(POLL_TIMEOUT);
+                if (poller.pollin(wakeUpIndex)) {
+                    while (null != wakeUpReceiver.recv(ZMQ.DONTWAIT)) {
+                        // drop the wake-up frames
+                    }
+                }
+                if (poller.pollin(dealerIndex)) {
+                    byte[] bytes;
+                    while (null != (bytes = dealerSocket.recv(ZMQ.DONTWAIT))) {
+                        inbound.add(bytes);
+                    }
+                }
+            }
+            // flush messages sent right before closing, like quit
+            if (null == pending) {
+                pending = outbound.poll();
+            }
+            while (null != pending && dealerSocket.send(pending, ZMQ.DONTWAIT)) {
+                pending = outbound.poll();
+            }
+        } catch (Exception ex) {
+            logger.error("Error in the zeromq I/O thread", ex);
+        } finally {
+            poller.close();
+            synchronized (wakeUpSender) {
+                wakeUpClosed = true;
+                wakeUpSender.close();
+            }
+            wakeUpReceiver.close();
+            dealerSocket.close();
+            context.close();
+        }
+    }
 
+    /**
+     * Wake the I/O thread up, unless a wake-up frame is already in flight.
+     */
+    private void wakeUp() {
+        if (!wokenUp.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (wakeUpSender) {
+            if (!wakeUpClosed) {
+                wakeUpSender.send(WAKE_UP_FRAME, ZMQ.DONTWAIT);
+            }
+        }
     }
 
     @Override
     public Message recv() throws IOException {
-        byte[] bytes = this.dealerSocket.recv();
-        return new Message(bytes);
+        try {
+            return new Message(this.inbound.take());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while receiving a message");
+        }
     }
 
     @Override
     public void send(Message message) throws IOException {
-        byte[] bytes = message.getBytes();
-        this.dealerSocket.send(bytes);
+        if (this.closed) {
+            throw new IOException("The client is closed");
+        }
+        this.outbound.add(message.getBytes());
+        this.wakeUp();
     }
 
     @Override
     public void close() {
-        dealerSocket.close();
-        context.close();
+        this.closed = true;
+        this.wakeUp();
+        try {
+            this.ioThread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
-
@@ -0,0 +1,18 @@
+package com.github.myzhan.locust4j.runtime;
+
+/**
+ * An {@link ArrivalRateProfile} tells the target arrival rate of the open model during a test.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public interface ArrivalRateProfile {
+
+    /**
+     * Get the target arrival rate.
+     *
+     * @param elapsedTime millis since the runner started spawning
+     * @return task executions to start per second
+     */
+    double getArrivalRate(long elapsedTime);
+}
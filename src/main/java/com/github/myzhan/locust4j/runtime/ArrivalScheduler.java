@@ -0,0 +1,207 @@
+package com.github.myzhan.locust4j.runtime;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.github.myzhan.locust4j.AbstractTask;
+import com.github.myzhan.locust4j.stats.Stats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link ArrivalScheduler} runs tasks in the open model. It starts executions of tasks at the target arrival rate,
+ * no matter how long they take, instead of running them back to back in user threads.
+ *
+ * Executions run on a bounded thread pool. If all the threads are busy when an execution is due, it doesn't wait in a
+ * queue, it's counted as a missed arrival. Missed arrivals mean the generator is saturated rather than the target
+ * failing, so they are logged instead of recorded as failures, which would skew the failure ratio.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+class ArrivalScheduler implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArrivalScheduler.class);
+
+    /**
+     * Missed arrivals are logged at most once in this interval.
+     */
+    private static final long MISSED_ARRIVAL_LOG_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * How long does the scheduler sleep while the arrival rate is zero.
+     */
+    private static final long IDLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final List<AbstractTask> tasks;
+    private final int[] cumulativeWeights;
+    private final Random random = new Random();
+    private final ArrivalRateProfile profile;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore executors;
+    private final AtomicLong missedArrivals = new AtomicLong(0);
+    private long loggedMissedArrivals = 0;
+    private long lastMissedArrivalLog = 0;
+    private final AtomicInteger threadNumber = new AtomicInteger();
+    private volatile double arrivalRate;
+    private Thread thread;
+
+    /**
+     * @param tasks          tasks to run, picked by weight for each arrival
+     * @param profile        the arrival rate profile, or null to use {@link #setArrivalRate(double)}
+     * @param maxConcurrency max number of executions in progress
+     */
+    ArrivalScheduler(List<AbstractTask> tasks, ArrivalRateProfile profile, int maxConcurrency) {
+        this.tasks = tasks;
+        this.profile = profile;
+        this.cumulativeWeights = new int[tasks.size()];
+        int weightSum = 0;
+        for (int i = 0; i < tasks.size(); i++) {
+            weightSum += Math.max(0, tasks.get(i).getWeight());
+            this.cumulativeWeights[i] = weightSum;
+        }
+        this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r);
+                    thread.setName("locust4j-arrival#" + threadNumber.getAndIncrement());
+                    return thread;
+                }
+            });
+        this.executor.prestartAllCoreThreads();
+        this.executors = new Semaphore(maxConcurrency);
+    }
+
+    /**
+     * Set the arrival rate, when there is no profile.
+     *
+     * @param arrivalRate task executions to start per second
+     */
+    void setArrivalRate(double arrivalRate) {
+        this.arrivalRate = arrivalRate;
+    }
+
+    long getMissedArrivals() {
+        return missedArrivals.get();
+    }
+
+    void start() {
+        this.thread = new Thread(this, "locust4j-arrival-scheduler");
+        this.thread.start();
+    }
+
+    void stop() {
+        if (null != this.thread) {
+            this.thread.interrupt();
+        }
+        this.executor.shutdownNow();
+        try {
+            this.executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            logger.error("Error while waiting for termination", ex);
+        }
+        if (this.missedArrivals.get() > 0) {
+            logger.warn("{} arrivals are missed in total, raise maxConcurrency if the executors are always busy",
+                this.missedArrivals.get());
+        }
+    }
+
+    private void logMissedArrivals(String taskName) {
+        long now = System.nanoTime();
+        if (this.lastMissedArrivalLog != 0 && now - this.lastMissedArrivalLog < MISSED_ARRIVAL_LOG_INTERVAL) {
+            return;
+        }
+        long missed = this.missedArrivals.get();
+        logger.warn("{} arrivals are missed because all the executors are busy, the last one is of task {}",
+            missed - this.loggedMissedArrivals, taskName);
+        this.loggedMissedArrivals = missed;
+        this.lastMissedArrivalLog = now;
+    }
+
+    private AbstractTask pickTask() {
+        int weightSum = this.cumulativeWeights[this.cumulativeWeights.length - 1];
+        if (0 == weightSum) {
+            return this.tasks.get(this.random.nextInt(this.tasks.size()));
+        }
+        int roll = this.random.nextInt(weightSum);
+        for (int i = 0; i < this.cumulativeWeights.length; i++) {
+            if (roll < this.cumulativeWeights[i]) {
+                return this.tasks.get(i);
+            }
+        }
+        return this.tasks.get(this.tasks.size() - 1);
+    }
+
+    @Override
+    public void run() {
+        long startTime = System.nanoTime();
+        long nextArrival = startTime;
+        while (!Thread.currentThread().isInterrupted()) {
+            double rate = null == this.profile ? this.arrivalRate
+                : this.profile.getArrivalRate(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            if (rate <= 0) {
+                LockSupport.parkNanos(IDLE_INTERVAL);
+                nextArrival = System.nanoTime();
+                continue;
+            }
+
+            // arrivals are due by the schedule, a slow arrival doesn't delay the next ones
+            nextArrival += (long)(TimeUnit.SECONDS.toNanos(1) / rate);
+            long delay;
+            while ((delay = nextArrival - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, delay);
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+
+            AbstractTask task = this.pickTask();
+            if (this.executors.tryAcquire()) {
+                try {
+                    this.executor.execute(new Arrival(task, this.executors));
+                } catch (RejectedExecutionException ex) {
+                    // the scheduler is stopped
+                    return;
+                }
+            } else {
+                this.missedArrivals.incrementAndGet();
+                this.logMissedArrivals(task.getName());
+            }
+        }
+    }
+
+    private static class Arrival implements Runnable {
+        private final AbstractTask task;
+        private final Semaphore executors;
+
+        private Arrival(AbstractTask task, Semaphore executors) {
+            this.task = task;
+            this.executors = executors;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.task.execute();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (Exception ex) {
+                logger.error("Unknown exception when executing the task", ex);
+                Stats.getInstance().recordFailure("unknown", "error", 0, ex.getMessage());
+            } finally {
+                this.executors.release();
+            }
+        }
+    }
+}
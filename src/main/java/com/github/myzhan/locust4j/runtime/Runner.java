@@ -1,11 +1,17 @@
 package com.github.myzhan.locust4j.runtime;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.management.ManagementFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -13,8 +19,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 import com.github.myzhan.locust4j.AbstractTask;
 import com.github.myzhan.locust4j.Locust;
 import com.github.myzhan.locust4j.message.Message;
+import com.github.myzhan.locust4j.message.StatsMessageEncoder;
+import com.github.myzhan.locust4j.ratelimit.AbstractRateLimiter;
 import com.github.myzhan.locust4j.rpc.Client;
 import com.github.myzhan.locust4j.stats.Stats;
+import com.github.myzhan.locust4j.taskset.AbstractTaskSet;
 import com.github.myzhan.locust4j.utils.Utils;
 import com.sun.management.OperatingSystemMXBean;
 import org.slf4j.Logger;
@@ -30,6 +39,11 @@ public class Runner {
 
     private static final Logger logger = LoggerFactory.getLogger(Runner.class);
 
+    /**
+     * Locust workers send heartbeats to the master every second by default.
+     */
+    public static final long DEFAULT_HEARTBEAT_INTERVAL = 1000;
+
     /**
      * Every locust4j instance registers a unique nodeID to the master when it makes a connection.
      * NodeID is kept by Runner.
@@ -67,10 +81,15 @@ public class Runner {
     private final Map<String, Object> remoteParams = new ConcurrentHashMap<>();
 
     /**
-     * Thread pool used by runner, it will be re-created when runner starts spawning.
+     * Thread pool used by runner, it will be re-created when runner starts spawning after being stopped.
      */
     private ExecutorService taskExecutor;
 
+    /**
+     * Running workers of each task, in the order of spawning.
+     */
+    private final List<List<Worker>> workersOfTasks = new ArrayList<>();
+
     /**
      * Thread pool used by runner to receive and send message
      */
@@ -86,6 +105,36 @@ public class Runner {
      */
     private final AtomicInteger threadNumber = new AtomicInteger();
 
+    /**
+     * Run each user on a virtual thread instead of a platform thread, if the JVM supports it.
+     */
+    private boolean virtualThreadsEnabled = false;
+
+    /**
+     * Max number of task executions in progress in the open model, 0 means the closed model.
+     */
+    private int maxConcurrency = 0;
+
+    /**
+     * Arrival rate profile of the open model, null means the arrival rate is the user count from the master.
+     */
+    private ArrivalRateProfile arrivalRateProfile;
+
+    /**
+     * Scheduler of the open model, it will be re-created when runner starts spawning after being stopped.
+     */
+    private volatile ArrivalScheduler arrivalScheduler;
+
+    /**
+     * Missed arrivals of the last scheduler, which are kept after it's stopped.
+     */
+    private volatile long missedArrivalsOfLastScheduler = 0;
+
+    /**
+     * Interval of heartbeats in millis.
+     */
+    private volatile long heartbeatInterval = DEFAULT_HEARTBEAT_INTERVAL;
+
     /**
      * Disable heartbeat request.
      */
@@ -103,6 +152,24 @@ public class Runner {
         this.nodeID = Utils.getNodeID();
     }
 
+    /**
+     * Set the interval of heartbeats, it takes effect from the next heartbeat. The master considers a worker missing
+     * after a few seconds without heartbeats, 3 seconds by default, so keep it well below that.
+     *
+     * @param heartbeatInterval interval in millis
+     * @since 2.1.0
+     */
+    public void setHeartbeatInterval(long heartbeatInterval) {
+        if (heartbeatInterval <= 0) {
+            throw new IllegalArgumentException("Heartbeat interval must be positive");
+        }
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    public long getHeartbeatInterval() {
+        return this.heartbeatInterval;
+    }
+
     public RunnerState getState() {
         return this.state;
     }
@@ -119,6 +186,18 @@ public class Runner {
         return this.remoteParams;
     }
 
+    /**
+     * Get the number of executions that couldn't start on time in the open model, because all the executors were
+     * busy. They are not recorded as failures.
+     *
+     * @return missed arrivals of the running test, or the last test if it's stopped
+     * @since 2.1.0
+     */
+    public long getMissedArrivals() {
+        ArrivalScheduler scheduler = this.arrivalScheduler;
+        return null == scheduler ? this.missedArrivalsOfLastScheduler : scheduler.getMissedArrivals();
+    }
+
     public void setStats(Stats stats) {
         this.stats = stats;
     }
@@ -127,51 +206,173 @@ public class Runner {
         this.tasks = tasks;
     }
 
-    private void spawnWorkers(int spawnCount) {
-        logger.debug("Spawning {} clients", spawnCount);
+    public void setVirtualThreadsEnabled(boolean virtualThreadsEnabled) {
+        this.virtualThreadsEnabled = virtualThreadsEnabled;
+    }
+
+    public boolean isVirtualThreadsEnabled() {
+        return this.virtualThreadsEnabled;
+    }
 
+    /**
+     * Run tasks in the open model.
+     *
+     * @param arrivalRateProfile arrival rate profile, or null to use the user count from the master as arrival rate
+     * @param maxConcurrency     max number of task executions in progress, 0 to run tasks in the closed model
+     */
+    public void setOpenModel(ArrivalRateProfile arrivalRateProfile, int maxConcurrency) {
+        this.arrivalRateProfile = arrivalRateProfile;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    private int[] allocateWorkers(int spawnCount) {
         float weightSum = 0;
         for (AbstractTask task : this.tasks) {
             weightSum += task.getWeight();
         }
 
-        for (AbstractTask task : this.tasks) {
-            int amount;
+        int[] amounts = new int[this.tasks.size()];
+        for (int i = 0; i < amounts.length; i++) {
+            AbstractTask task = this.tasks.get(i);
             if (0 == weightSum) {
-                amount = spawnCount / this.tasks.size();
+                amounts[i] = spawnCount / this.tasks.size();
             } else {
                 float percent = task.getWeight() / weightSum;
-                amount = Math.round(spawnCount * percent);
+                amounts[i] = Math.round(spawnCount * percent);
             }
+        }
+        return amounts;
+    }
 
-            logger.debug("Allocating {} threads to task, which name is {}", amount, task.getName());
+    private void spawnWorkers(int spawnCount) {
+        logger.debug("Spawning {} clients", spawnCount);
 
-            for (int i = 1; i <= amount; i++) {
-                this.numClients++;
-                this.taskExecutor.submit(task);
+        int[] amounts = this.allocateWorkers(spawnCount);
+        int numClients = 0;
+        for (int i = 0; i < amounts.length; i++) {
+            AbstractTask task = this.tasks.get(i);
+            List<Worker> workers = this.workersOfTasks.get(i);
+
+            // forget workers that have quit by themselves, they will be spawned again
+            Iterator<Worker> iterator = workers.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isDone()) {
+                    iterator.remove();
+                }
             }
+
+            logger.debug("Allocating {} threads to task, which name is {}, {} threads are running", amounts[i],
+                task.getName(), workers.size());
+
+            while (workers.size() < amounts[i]) {
+                Worker worker = new Worker(task);
+                worker.submitTo(this.taskExecutor);
+                workers.add(worker);
+            }
+            while (workers.size() > amounts[i]) {
+                // stop the latest spawned workers first, like locust does
+                workers.remove(workers.size() - 1).stop();
+            }
+            numClients += workers.size();
         }
+        this.numClients = numClients;
     }
 
-    protected void startSpawning(int spawnCount) {
+    private void clearStats() {
         stats.getClearStatsQueue().offer(true);
         Stats.getInstance().wakeMeUp();
+    }
 
-        this.numClients = 0;
-        this.threadNumber.set(0);
-        this.taskExecutor = new ThreadPoolExecutor(spawnCount, spawnCount, 0L, TimeUnit.MILLISECONDS,
-            new LinkedBlockingQueue<Runnable>(),
-            new ThreadFactory() {
-                @Override
-                public Thread newThread(Runnable r) {
-                    Thread thread = new Thread(r);
-                    thread.setName("locust4j-worker#" + threadNumber.getAndIncrement());
-                    return thread;
+    /**
+     * In the open model, the user count from the master is the arrival rate, unless there is a local profile.
+     */
+    private void startArrivals(int spawnCount) {
+        if (null == this.arrivalScheduler) {
+            this.clearStats();
+            this.missedArrivalsOfLastScheduler = 0;
+            this.arrivalScheduler = new ArrivalScheduler(this.tasks, this.arrivalRateProfile, this.maxConcurrency);
+            this.arrivalScheduler.setArrivalRate(spawnCount);
+            this.arrivalScheduler.start();
+        } else {
+            this.arrivalScheduler.setArrivalRate(spawnCount);
+        }
+        this.numClients = spawnCount;
+    }
+
+    protected void startSpawning(int spawnCount) {
+        if (this.maxConcurrency > 0) {
+            this.startArrivals(spawnCount);
+            return;
+        }
+        if (null == this.taskExecutor) {
+            this.clearStats();
+
+            this.numClients = 0;
+            this.threadNumber.set(0);
+            this.workersOfTasks.clear();
+            for (int i = 0; i < this.tasks.size(); i++) {
+                this.workersOfTasks.add(new ArrayList<Worker>());
+            }
+            if (this.virtualThreadsEnabled) {
+                this.taskExecutor = VirtualThreads.newExecutor("locust4j-worker#");
+                if (null == this.taskExecutor) {
+                    logger.warn("Virtual threads require JDK 21 or newer, fall back to platform threads");
                 }
-            });
+            }
+            if (null == this.taskExecutor) {
+                // workers never finish unless they are stopped, so every worker takes a thread of its own,
+                // and threads of stopped workers are reused by workers spawned later.
+                this.taskExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r);
+                            thread.setName("locust4j-worker#" + threadNumber.getAndIncrement());
+                            return thread;
+                        }
+                    });
+            }
+        }
         this.spawnWorkers(spawnCount);
     }
 
+    /**
+     * Collect the global rate limiter, and rate limiters of tasks and tasks in task sets, each only once.
+     */
+    private Set<AbstractRateLimiter> getRateLimiters() {
+        Set<AbstractRateLimiter> rateLimiters = Collections.newSetFromMap(
+            new IdentityHashMap<AbstractRateLimiter, Boolean>());
+        if (null != Locust.getInstance().getRateLimiter()) {
+            rateLimiters.add(Locust.getInstance().getRateLimiter());
+        }
+        for (AbstractTask task : this.tasks) {
+            if (null != task.getRateLimiter()) {
+                rateLimiters.add(task.getRateLimiter());
+            }
+            if (task instanceof AbstractTaskSet) {
+                for (AbstractTask taskInSet : ((AbstractTaskSet)task).getTasks()) {
+                    if (null != taskInSet.getRateLimiter()) {
+                        rateLimiters.add(taskInSet.getRateLimiter());
+                    }
+                }
+            }
+        }
+        return rateLimiters;
+    }
+
+    private void startRateLimiters() {
+        for (AbstractRateLimiter rateLimiter : this.getRateLimiters()) {
+            rateLimiter.start();
+        }
+    }
+
+    private void stopRateLimiters() {
+        for (AbstractRateLimiter rateLimiter : this.getRateLimiters()) {
+            rateLimiter.stop();
+        }
+    }
+
     protected void spawnComplete() {
         Map<String, Object> data = new HashMap<>(1);
         data.put("count", this.numClients);
@@ -193,6 +394,14 @@ public class Runner {
     }
 
     private void shutdownThreadPool() {
+        if (null == this.taskExecutor) {
+            return;
+        }
+        for (List<Worker> workers : this.workersOfTasks) {
+            for (Worker worker : workers) {
+                worker.stop();
+            }
+        }
         this.taskExecutor.shutdownNow();
         try {
             this.taskExecutor.awaitTermination(1, TimeUnit.SECONDS);
@@ -200,15 +409,21 @@ public class Runner {
             logger.error("Error while waiting for termination", ex);
         }
         this.taskExecutor = null;
+        this.workersOfTasks.clear();
     }
 
     protected void stop() {
+        if (null != this.arrivalScheduler) {
+            this.arrivalScheduler.stop();
+            this.missedArrivalsOfLastScheduler = this.arrivalScheduler.getMissedArrivals();
+            this.arrivalScheduler = null;
+        }
         this.shutdownThreadPool();
+        this.numClients = 0;
     }
 
     private boolean spawnMessageIsValid(Message message) {
-        Map<String, Object> data = message.getData();
-        if (!data.containsKey("user_classes_count")) {
+        if (null == message.get("user_classes_count")) {
             logger.debug("Invalid spawn message without user_classes_count, you may use a newer but incompatible version of locust.");
             return false;
         }
@@ -216,7 +431,7 @@ public class Runner {
     }
 
     private int sumUsersAmount(Message message) {
-        Map<String, Integer> userClassesCount = (Map<String, Integer>)message.getData().get("user_classes_count");
+        Map<String, Integer> userClassesCount = (Map<String, Integer>)message.get("user_classes_count");
         int amount = 0;
         for (Map.Entry<String, Integer> entry: userClassesCount.entrySet()) {
             amount = amount + entry.getValue();
@@ -226,7 +441,6 @@ public class Runner {
     }
 
     private void onSpawnMessage(Message message) {
-        Map<String, Object> data = message.getData();
         int numUsers = sumUsersAmount(message);
 
         try {
@@ -236,8 +450,9 @@ public class Runner {
         }
 
         this.remoteParams.put("user_classes_count", this.userClassesCountFromMaster);
-        if (data.get("host") != null) {
-            this.remoteParams.put("host", data.get("host").toString());
+        Object host = message.get("host");
+        if (host != null) {
+            this.remoteParams.put("host", host.toString());
         }
 
         this.startSpawning(numUsers);
@@ -260,29 +475,24 @@ public class Runner {
         if (this.state == RunnerState.Ready) {
             if ("spawn".equals(type) && spawnMessageIsValid(message)) {
                 this.state = RunnerState.Spawning;
-                this.onSpawnMessage(message);
-
-                if (null != Locust.getInstance().getRateLimiter()) {
-                    Locust.getInstance().getRateLimiter().start();
-                }
+                // start rate limiters before workers, or workers find them stopped
+                this.startRateLimiters();
 
+                this.onSpawnMessage(message);
                 this.state = RunnerState.Running;
             }
         } else if (this.state == RunnerState.Spawning || this.state == RunnerState.Running) {
             if ("spawn".equals(type) && spawnMessageIsValid(message)) {
-                // TODO: Since locust 2.0.0, master takes control of the ramp-up rate.
-                // While ramping up, master sends multiple spawn messages. Now we stop previous threads before spawn,
-                // may result in many creation and destruction of threads.
-                this.stop();
+                // Since locust 2.0.0, master takes control of the ramp-up rate.
+                // While ramping up, master sends multiple spawn messages, only the difference of users is spawned
+                // or stopped, running users are kept.
                 this.state = RunnerState.Spawning;
                 this.onSpawnMessage(message);
                 this.state = RunnerState.Running;
             } else if ("stop".equals(type)) {
                 this.stop();
 
-                if (null != Locust.getInstance().getRateLimiter()) {
-                    Locust.getInstance().getRateLimiter().stop();
-                }
+                this.stopRateLimiters();
 
                 this.state = RunnerState.Stopped;
                 logger.debug("Recv stop message from master, all the workers are stopped");
@@ -297,12 +507,10 @@ public class Runner {
         } else if (this.state == RunnerState.Stopped) {
             if ("spawn".equals(type) && spawnMessageIsValid(message)) {
                 this.state = RunnerState.Spawning;
-                this.onSpawnMessage(message);
-
-                if (null != Locust.getInstance().getRateLimiter()) {
-                    Locust.getInstance().getRateLimiter().start();
-                }
+                // start rate limiters before workers, or workers find them stopped
+                this.startRateLimiters();
 
+                this.onSpawnMessage(message);
                 this.state = RunnerState.Running;
             }
         }
@@ -343,6 +551,8 @@ public class Runner {
                 try {
                     Message message = runner.rpcClient.recv();
                     runner.onMessage(message);
+                } catch (InterruptedIOException ex) {
+                    return;
                 } catch (Exception ex) {
                     logger.error("Error while receiving a message", ex);
                 }
@@ -352,6 +562,7 @@ public class Runner {
 
     private static class Sender implements Runnable {
         private final Runner runner;
+        private final StatsMessageEncoder encoder = new StatsMessageEncoder();
 
         private Sender(Runner runner) {
             this.runner = runner;
@@ -372,8 +583,7 @@ public class Runner {
                     if (runner.state == RunnerState.Ready || runner.state == RunnerState.Stopped) {
                         continue;
                     }
-                    data.put("user_count", runner.numClients);
-                    runner.rpcClient.send(new Message("stats", data, null, runner.nodeID));
+                    runner.rpcClient.send(encoder.encode(data, runner.numClients, runner.nodeID));
                 } catch (InterruptedException ex) {
                     return;
                 } catch (Exception ex) {
@@ -384,7 +594,6 @@ public class Runner {
     }
 
     private static class Heartbeat implements Runnable {
-        private static final int HEARTBEAT_INTERVAL = 1000;
         private final Runner runner;
 
         private final OperatingSystemMXBean osBean = getOsBean();
@@ -399,7 +608,7 @@ public class Runner {
             Thread.currentThread().setName(name + "heartbeat");
             while (true) {
                 try {
-                    Thread.sleep(HEARTBEAT_INTERVAL);
+                    Thread.sleep(runner.heartbeatInterval);
                     if (runner.isHeartbeatStopped()) {
                         continue;
                     }
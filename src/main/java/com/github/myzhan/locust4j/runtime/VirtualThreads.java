@@ -0,0 +1,45 @@
+package com.github.myzhan.locust4j.runtime;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Virtual threads are only available since JDK 21, but locust4j is compiled for older JDKs, so they are created by
+ * reflection.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+class VirtualThreads {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Create an executor which starts a new virtual thread for each task.
+     *
+     * @param namePrefix prefix of thread names, followed by a counter
+     * @return the executor, or null if virtual threads are not supported by the running JVM
+     */
+    static ExecutorService newExecutor(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService)newExecutor.invoke(null, factory);
+        } catch (Exception ex) {
+            // JDK before 21, or JDK 19 and 20 without --enable-preview
+            logger.debug("Virtual threads are not supported by this JVM", ex);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.myzhan.locust4j.runtime;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link Worker} runs a task on a thread of the runner, like a user of locust.
+ *
+ * Each worker has a stop flag of its own, which is set before the thread is interrupted, so a despawned worker stops
+ * after its current execution even if the task swallows the interrupt.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public final class Worker implements Runnable {
+
+    private static final ThreadLocal<Worker> CURRENT = new ThreadLocal<>();
+
+    private final Runnable task;
+    private volatile boolean stopped = false;
+    private Future<?> future;
+
+    Worker(Runnable task) {
+        this.task = task;
+    }
+
+    /**
+     * @return true if the worker running on the current thread is stopped by the runner
+     */
+    public static boolean isCurrentStopped() {
+        Worker worker = CURRENT.get();
+        return null != worker && worker.stopped;
+    }
+
+    void submitTo(ExecutorService executor) {
+        this.future = executor.submit(this);
+    }
+
+    @Override
+    public void run() {
+        CURRENT.set(this);
+        try {
+            task.run();
+        } finally {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Set the stop flag, and then interrupt the thread.
+     */
+    void stop() {
+        this.stopped = true;
+        if (null != this.future) {
+            this.future.cancel(true);
+        }
+    }
+
+    boolean isDone() {
+        return null != this.future && this.future.isDone();
+    }
+}
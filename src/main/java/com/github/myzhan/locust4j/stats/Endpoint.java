@@ -0,0 +1,57 @@
+package com.github.myzhan.locust4j.stats;
+
+/**
+ * An {@link Endpoint} is a handle of the stats entry identified by request type and name.
+ *
+ * Get a handle once by {@link com.github.myzhan.locust4j.Locust#endpoint(String, String)} and keep it, recording
+ * through the handle skips building and hashing the key of stats entry for every request.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public class Endpoint {
+
+    private final Stats stats;
+    private final String requestType;
+    private final String name;
+    private final int id;
+
+    Endpoint(Stats stats, String requestType, String name, int id) {
+        this.stats = stats;
+        this.requestType = requestType;
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * Add a successful record of this endpoint.
+     *
+     * @param responseTime  how long does it take for a single test scenario, in millis
+     * @param contentLength content length in bytes
+     */
+    public void success(long responseTime, long contentLength) {
+        stats.recordSuccess(this, responseTime, contentLength);
+    }
+
+    /**
+     * Add a failed record of this endpoint.
+     *
+     * @param responseTime how long does it take for a single test scenario, in millis
+     * @param error        error message
+     */
+    public void failure(long responseTime, String error) {
+        stats.recordFailure(this, responseTime, error);
+    }
+
+    public String getRequestType() {
+        return requestType;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    int getId() {
+        return id;
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.myzhan.locust4j.stats;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.github.myzhan.locust4j.message.LongIntMap;
+import org.msgpack.core.MessagePacker;
+
+/**
+ * A {@link PerSecondCounter} counts events per second, like num_reqs_per_sec that the master expects.
+ *
+ * Counts are kept in a ring of slots indexed by second mod {@link #SLOTS}, so counting an event is an index
+ * computation and an array increment. An entry is reset at every report, which is much shorter than the ring. If a
+ * slot is still taken by another second, like when the report interval is longer than the ring, the count goes to an
+ * overflow map instead.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+class PerSecondCounter {
+
+    /**
+     * Number of slots, it must be a power of two.
+     */
+    static final int SLOTS = 16;
+    private static final int MASK = SLOTS - 1;
+
+    private final long[] seconds;
+    private final int[] counts;
+    private LongIntMap overflow;
+    private int size;
+
+    PerSecondCounter() {
+        this.seconds = new long[SLOTS];
+        this.counts = new int[SLOTS];
+    }
+
+    /**
+     * @param second timestamp in seconds
+     * @param delta  a positive delta
+     * @throws IllegalArgumentException if delta isn't positive, since a zero count means an empty slot
+     */
+    void add(long second, int delta) {
+        if (delta <= 0) {
+            throw new IllegalArgumentException("delta must be positive");
+        }
+        int slot = (int)second & MASK;
+        if (counts[slot] == 0) {
+            seconds[slot] = second;
+            counts[slot] = delta;
+            size++;
+        } else if (seconds[slot] == second) {
+            counts[slot] += delta;
+        } else {
+            if (null == overflow) {
+                overflow = new LongIntMap();
+            }
+            int overflowSize = overflow.size();
+            overflow.add(second, delta);
+            size += overflow.size() - overflowSize;
+        }
+    }
+
+    /**
+     * @param second timestamp in seconds
+     * @return count, or null if nothing is counted in the second
+     */
+    Integer get(long second) {
+        int slot = (int)second & MASK;
+        if (counts[slot] != 0 && seconds[slot] == second) {
+            return counts[slot];
+        }
+        return null == overflow ? null : overflow.get(second);
+    }
+
+    void merge(PerSecondCounter other) {
+        if (other.size == 0) {
+            return;
+        }
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (other.counts[slot] != 0) {
+                add(other.seconds[slot], other.counts[slot]);
+            }
+        }
+        if (null != other.overflow) {
+            for (int slot = other.overflow.nextSlot(0); slot >= 0; slot = other.overflow.nextSlot(slot + 1)) {
+                add(other.overflow.keyAt(slot), other.overflow.valueAt(slot));
+            }
+        }
+    }
+
+    /**
+     * @return number of seconds with counts
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Remove all the counts, but keep the slots for reuse.
+     */
+    void clear() {
+        if (size == 0) {
+            return;
+        }
+        Arrays.fill(counts, 0);
+        if (null != overflow) {
+            overflow.clear();
+        }
+        size = 0;
+    }
+
+    /**
+     * @return a map from seconds to counts
+     */
+    LongIntMap toLongIntMap() {
+        LongIntMap map = new LongIntMap();
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (counts[slot] != 0) {
+                map.add(seconds[slot], counts[slot]);
+            }
+        }
+        if (null != overflow) {
+            map.merge(overflow);
+        }
+        return map;
+    }
+
+    /**
+     * Pack as a msgpack map of seconds to counts, only seconds with counts are packed.
+     *
+     * @param packer the packer to write to
+     * @throws IOException if the packer fails to write
+     */
+    void pack(MessagePacker packer) throws IOException {
+        packer.packMapHeader(size);
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (counts[slot] != 0) {
+                packer.packLong(seconds[slot]);
+                packer.packInt(counts[slot]);
+            }
+        }
+        if (null != overflow) {
+            for (int slot = overflow.nextSlot(0); slot >= 0; slot = overflow.nextSlot(slot + 1)) {
+                packer.packLong(overflow.keyAt(slot));
+                packer.packInt(overflow.valueAt(slot));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toLongIntMap().toString();
+    }
+}
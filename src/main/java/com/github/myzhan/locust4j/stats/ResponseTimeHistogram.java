@@ -0,0 +1,295 @@
+package com.github.myzhan.locust4j.stats;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.github.myzhan.locust4j.message.LongIntMap;
+import org.msgpack.core.MessagePacker;
+
+/**
+ * A {@link ResponseTimeHistogram} counts response times in log-linear buckets, following the rounding rules of locust.
+ * <ul>
+ * <li>under 100 ms, response times are kept as they are</li>
+ * <li>under 1000 ms, response times are rounded to 10 ms</li>
+ * <li>under 10000 ms, response times are rounded to 100 ms</li>
+ * <li>otherwise, response times are rounded to 1000 ms</li>
+ * </ul>
+ * Half is rounded down, as {@link com.github.myzhan.locust4j.utils.Utils#round(long, int)} does.
+ *
+ * Buckets up to {@link #MAX_BUCKET_RESPONSE_TIME} are kept in a fixed array, so recording a response time is an index
+ * computation and an array increment. Longer and negative response times are counted in an overflow map.
+ *
+ * @author myzhan
+ */
+public class ResponseTimeHistogram {
+
+    /**
+     * Response times longer than this are counted in the overflow map.
+     */
+    public static final long MAX_BUCKET_RESPONSE_TIME = 60000;
+
+    private static final int TENS_OFFSET = 100;
+    private static final int HUNDREDS_OFFSET = TENS_OFFSET + 90;
+    private static final int THOUSANDS_OFFSET = HUNDREDS_OFFSET + 90;
+    private static final int BUCKET_COUNT = THOUSANDS_OFFSET + (int)(MAX_BUCKET_RESPONSE_TIME - 10000) / 1000 + 1;
+
+    private final int[] buckets;
+    private LongIntMap overflow;
+    private long count;
+
+    public ResponseTimeHistogram() {
+        this.buckets = new int[BUCKET_COUNT];
+    }
+
+    /**
+     * Round the response time like locust.
+     *
+     * @param responseTime response time in millis
+     * @return rounded response time
+     */
+    public static long round(long responseTime) {
+        long unit;
+        if (responseTime < 100) {
+            return responseTime;
+        } else if (responseTime < 1000) {
+            unit = 10;
+        } else if (responseTime < 10000) {
+            unit = 100;
+        } else {
+            unit = 1000;
+        }
+        long rounded = responseTime / unit;
+        if ((responseTime % unit) * 2 > unit) {
+            rounded++;
+        }
+        return rounded * unit;
+    }
+
+    private static int indexOf(long roundedResponseTime) {
+        if (roundedResponseTime < 0 || roundedResponseTime > MAX_BUCKET_RESPONSE_TIME) {
+            return -1;
+        } else if (roundedResponseTime < 100) {
+            return (int)roundedResponseTime;
+        } else if (roundedResponseTime < 1000) {
+            return TENS_OFFSET + (int)(roundedResponseTime - 100) / 10;
+        } else if (roundedResponseTime < 10000) {
+            return HUNDREDS_OFFSET + (int)(roundedResponseTime - 1000) / 100;
+        } else {
+            return THOUSANDS_OFFSET + (int)(roundedResponseTime - 10000) / 1000;
+        }
+    }
+
+    private static long responseTimeOf(int index) {
+        if (index < TENS_OFFSET) {
+            return index;
+        } else if (index < HUNDREDS_OFFSET) {
+            return 100 + (index - TENS_OFFSET) * 10L;
+        } else if (index < THOUSANDS_OFFSET) {
+            return 1000 + (index - HUNDREDS_OFFSET) * 100L;
+        } else {
+            return 10000 + (index - THOUSANDS_OFFSET) * 1000L;
+        }
+    }
+
+    /**
+     * Count a response time in its bucket.
+     *
+     * @param responseTime response time in millis, not rounded
+     */
+    public void record(long responseTime) {
+        this.record(responseTime, 1);
+    }
+
+    /**
+     * Count a response time in its bucket several times.
+     *
+     * @param responseTime response time in millis, rounded or not
+     * @param times        a positive number of times
+     * @throws IllegalArgumentException if times isn't positive
+     * @since 2.1.0
+     */
+    public void record(long responseTime, int times) {
+        if (times <= 0) {
+            throw new IllegalArgumentException("times must be positive");
+        }
+        long rounded = round(responseTime);
+        int index = indexOf(rounded);
+        if (index >= 0) {
+            buckets[index] += times;
+        } else {
+            if (null == overflow) {
+                overflow = new LongIntMap();
+            }
+            overflow.add(rounded, times);
+        }
+        count += times;
+    }
+
+    /**
+     * Get the count of a rounded response time.
+     *
+     * @param roundedResponseTime rounded response time in millis
+     * @return count, or null if the response time has never been recorded
+     */
+    public Integer get(long roundedResponseTime) {
+        int index = indexOf(roundedResponseTime);
+        if (index >= 0 && responseTimeOf(index) == roundedResponseTime) {
+            return buckets[index] == 0 ? null : buckets[index];
+        }
+        return overflow == null ? null : overflow.get(roundedResponseTime);
+    }
+
+    /**
+     * @return count of all the recorded response times
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the response time at a percentile, which is the smallest rounded response time that the given percent of
+     * requests are not slower than.
+     *
+     * @param percent percent between 0 and 1, like 0.95
+     * @return rounded response time in millis, or 0 if nothing is recorded
+     * @since 2.1.0
+     */
+    public long getPercentile(double percent) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long)Math.ceil(count * percent));
+        long[] overflowTimes = new long[null == overflow ? 0 : overflow.size()];
+        if (overflowTimes.length > 0) {
+            int i = 0;
+            for (int slot = overflow.nextSlot(0); slot >= 0; slot = overflow.nextSlot(slot + 1)) {
+                overflowTimes[i++] = overflow.keyAt(slot);
+            }
+            Arrays.sort(overflowTimes);
+        }
+
+        long seen = 0;
+        int next = 0;
+        // negative response times come before the buckets, longer ones come after
+        while (next < overflowTimes.length && overflowTimes[next] < 0) {
+            seen += overflow.get(overflowTimes[next]);
+            if (seen >= target) {
+                return overflowTimes[next];
+            }
+            next++;
+        }
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets[i];
+            if (buckets[i] != 0 && seen >= target) {
+                return responseTimeOf(i);
+            }
+        }
+        for (; next < overflowTimes.length; next++) {
+            seen += overflow.get(overflowTimes[next]);
+            if (seen >= target) {
+                return overflowTimes[next];
+            }
+        }
+        return overflowTimes.length > 0 ? overflowTimes[overflowTimes.length - 1] : MAX_BUCKET_RESPONSE_TIME;
+    }
+
+    /**
+     * @return sum of all the rounded response times in millis
+     * @since 2.1.0
+     */
+    public long getTotalResponseTime() {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (buckets[i] != 0) {
+                total += responseTimeOf(i) * buckets[i];
+            }
+        }
+        if (null != overflow) {
+            for (int slot = overflow.nextSlot(0); slot >= 0; slot = overflow.nextSlot(slot + 1)) {
+                total += overflow.keyAt(slot) * overflow.valueAt(slot);
+            }
+        }
+        return total;
+    }
+
+    public void merge(ResponseTimeHistogram other) {
+        if (other.count == 0) {
+            return;
+        }
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] += other.buckets[i];
+        }
+        if (null != other.overflow && other.overflow.size() > 0) {
+            if (null == overflow) {
+                overflow = new LongIntMap();
+            }
+            overflow.merge(other.overflow);
+        }
+        count += other.count;
+    }
+
+    /**
+     * Remove all the counts, but keep the buckets for reuse.
+     */
+    public void clear() {
+        if (count == 0) {
+            return;
+        }
+        Arrays.fill(buckets, 0);
+        if (null != overflow) {
+            overflow.clear();
+        }
+        count = 0;
+    }
+
+    /**
+     * Convert to the response_times map that the master expects, rounded response times to counts.
+     *
+     * @return response_times
+     */
+    public LongIntMap toLongIntMap() {
+        LongIntMap map = new LongIntMap();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (buckets[i] != 0) {
+                map.add(responseTimeOf(i), buckets[i]);
+            }
+        }
+        if (null != overflow) {
+            map.merge(overflow);
+        }
+        return map;
+    }
+
+    /**
+     * Pack as the response_times map that the master expects, without converting to a map.
+     *
+     * @param packer the packer to write to
+     * @throws IOException if the packer fails to write
+     */
+    public void pack(MessagePacker packer) throws IOException {
+        int size = null == overflow ? 0 : overflow.size();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (buckets[i] != 0) {
+                size++;
+            }
+        }
+        packer.packMapHeader(size);
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (buckets[i] != 0) {
+                packer.packLong(responseTimeOf(i));
+                packer.packInt(buckets[i]);
+            }
+        }
+        if (null != overflow) {
+            for (int slot = overflow.nextSlot(0); slot >= 0; slot = overflow.nextSlot(slot + 1)) {
+                packer.packLong(overflow.keyAt(slot));
+                packer.packInt(overflow.valueAt(slot));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toLongIntMap().toString();
+    }
+}
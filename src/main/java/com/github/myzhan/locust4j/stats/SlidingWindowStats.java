@@ -0,0 +1,254 @@
+package com.github.myzhan.locust4j.stats;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A {@link SlidingWindowStats} answers queries about the last few windows of test results, like the p99 response time
+ * of an endpoint in the last second, so tasks can make decisions in process, like adapting think time or breaking
+ * circuits.
+ *
+ * It listens to windows of {@link Stats}, which slides the window. Each time, the stats thread merges the windows in
+ * the span into immutable snapshots and publishes them, so queries from any thread neither lock nor touch what users
+ * are recording into.
+ *
+ * <pre>
+ * Stats.getInstance().setWindowInterval(100);
+ * SlidingWindowStats lastSecond = new SlidingWindowStats(10);
+ * Stats.getInstance().addWindowListener(lastSecond);
+ *
+ * SlidingWindowStats.Snapshot snapshot = lastSecond.get("GET", "/api");
+ * if (null != snapshot &amp;&amp; snapshot.getPercentile(0.99) &gt; 500) {
+ *     // back off
+ * }
+ * </pre>
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public class SlidingWindowStats implements StatsWindowListener {
+
+    private final int windowCount;
+
+    /**
+     * Rings are indexed by method first and then by name, only the stats thread touches them.
+     */
+    private final Map<String, Map<String, Ring>> rings = new HashMap<>(8);
+    private final Ring totalRing;
+    private final long[] durations;
+    private int cursor = -1;
+    private long sequence = 0;
+
+    private volatile Map<String, Map<String, Snapshot>> snapshots = Collections.emptyMap();
+    private volatile Snapshot total = new Snapshot(new ResponseTimeHistogram(), 0, 0, 0, 0);
+
+    /**
+     * @param windowCount number of windows in the span, the span is windowCount times the window interval
+     */
+    public SlidingWindowStats(int windowCount) {
+        if (windowCount <= 0) {
+            throw new IllegalArgumentException("Window count must be positive");
+        }
+        this.windowCount = windowCount;
+        this.totalRing = new Ring(windowCount);
+        this.durations = new long[windowCount];
+    }
+
+    @Override
+    public void onWindow(StatsWindow window) {
+        cursor = (cursor + 1) % windowCount;
+        sequence++;
+        durations[cursor] = window.getDuration();
+        long duration = 0;
+        for (long d : durations) {
+            duration += d;
+        }
+
+        totalRing.set(cursor, sequence, window.getTotal());
+        for (StatsEntry entry : window.getEntries()) {
+            Map<String, Ring> ringsOfMethod = StatsEntries.ofMethod(rings, entry.getMethod());
+            Ring ring = ringsOfMethod.get(entry.getName());
+            if (null == ring) {
+                ring = new Ring(windowCount);
+                ringsOfMethod.put(entry.getName(), ring);
+            }
+            ring.set(cursor, sequence, entry);
+        }
+
+        Map<String, Map<String, Snapshot>> newSnapshots = new HashMap<>(rings.size() * 2);
+        for (Iterator<Map.Entry<String, Map<String, Ring>>> methods = rings.entrySet().iterator(); methods.hasNext(); ) {
+            Map.Entry<String, Map<String, Ring>> ringsOfMethod = methods.next();
+            Map<String, Snapshot> snapshotsOfMethod = new HashMap<>(ringsOfMethod.getValue().size() * 2);
+            for (Iterator<Map.Entry<String, Ring>> it = ringsOfMethod.getValue().entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Ring> ring = it.next();
+                if (ring.getValue().lastSequence != sequence) {
+                    // nothing recorded in this window, drop the ring if nothing is recorded in the span either
+                    ring.getValue().clear(cursor);
+                    if (ring.getValue().isEmpty()) {
+                        it.remove();
+                        continue;
+                    }
+                }
+                snapshotsOfMethod.put(ring.getKey(), ring.getValue().snapshot(duration));
+            }
+            if (snapshotsOfMethod.isEmpty()) {
+                methods.remove();
+            } else {
+                newSnapshots.put(ringsOfMethod.getKey(), Collections.unmodifiableMap(snapshotsOfMethod));
+            }
+        }
+        this.snapshots = newSnapshots;
+        this.total = totalRing.snapshot(duration);
+    }
+
+    /**
+     * @param method request type
+     * @param name   request name
+     * @return test results of the endpoint in the span, or null if nothing was recorded
+     */
+    public Snapshot get(String method, String name) {
+        Map<String, Snapshot> snapshotsOfMethod = this.snapshots.get(method);
+        return null == snapshotsOfMethod ? null : snapshotsOfMethod.get(name);
+    }
+
+    /**
+     * @return test results of all the requests in the span
+     */
+    public Snapshot getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Test results of the windows of an endpoint.
+     */
+    private static class Ring {
+        private final ResponseTimeHistogram[] histograms;
+        private final long[] numRequests;
+        private final long[] numFailures;
+        private final long[] totalResponseTimes;
+        private long lastSequence = 0;
+
+        private Ring(int windowCount) {
+            this.histograms = new ResponseTimeHistogram[windowCount];
+            for (int i = 0; i < windowCount; i++) {
+                this.histograms[i] = new ResponseTimeHistogram();
+            }
+            this.numRequests = new long[windowCount];
+            this.numFailures = new long[windowCount];
+            this.totalResponseTimes = new long[windowCount];
+        }
+
+        private void clear(int index) {
+            this.histograms[index].clear();
+            this.numRequests[index] = 0;
+            this.numFailures[index] = 0;
+            this.totalResponseTimes[index] = 0;
+        }
+
+        private void set(int index, long sequence, StatsEntry entry) {
+            this.clear(index);
+            this.histograms[index].merge(entry.getResponseTimeHistogram());
+            this.numRequests[index] = entry.getNumRequests();
+            this.numFailures[index] = entry.getNumFailures();
+            this.totalResponseTimes[index] = entry.getTotalResponseTime();
+            this.lastSequence = sequence;
+        }
+
+        private boolean isEmpty() {
+            for (int i = 0; i < numRequests.length; i++) {
+                if (numRequests[i] != 0 || numFailures[i] != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Snapshot snapshot(long duration) {
+            ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+            long requests = 0;
+            long failures = 0;
+            long totalResponseTime = 0;
+            for (int i = 0; i < histograms.length; i++) {
+                histogram.merge(histograms[i]);
+                requests += numRequests[i];
+                failures += numFailures[i];
+                totalResponseTime += totalResponseTimes[i];
+            }
+            return new Snapshot(histogram, requests, failures, totalResponseTime, duration);
+        }
+    }
+
+    /**
+     * An immutable snapshot of test results in the span, it's safe to read from any thread.
+     */
+    public static class Snapshot {
+        private final ResponseTimeHistogram responseTimes;
+        private final long numRequests;
+        private final long numFailures;
+        private final long totalResponseTime;
+        private final long duration;
+
+        private Snapshot(ResponseTimeHistogram responseTimes, long numRequests, long numFailures,
+                         long totalResponseTime, long duration) {
+            this.responseTimes = responseTimes;
+            this.numRequests = numRequests;
+            this.numFailures = numFailures;
+            this.totalResponseTime = totalResponseTime;
+            this.duration = duration;
+        }
+
+        public long getNumRequests() {
+            return numRequests;
+        }
+
+        public long getNumFailures() {
+            return numFailures;
+        }
+
+        /**
+         * @return millis covered by the windows in the span
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * @param percent percent between 0 and 1, like 0.99
+         * @return rounded response time in millis, or 0 if nothing is recorded
+         */
+        public long getPercentile(double percent) {
+            return responseTimes.getPercentile(percent);
+        }
+
+        /**
+         * @return average response time in millis of successful requests
+         */
+        public double getAvgResponseTime() {
+            return numRequests == 0 ? 0 : (double)totalResponseTime / numRequests;
+        }
+
+        /**
+         * @return successful requests per second
+         */
+        public double getRps() {
+            return duration <= 0 ? 0 : numRequests * 1000.0 / duration;
+        }
+
+        /**
+         * @return failures per second
+         */
+        public double getFailRps() {
+            return duration <= 0 ? 0 : numFailures * 1000.0 / duration;
+        }
+
+        /**
+         * @return ratio of failures to all the requests, between 0 and 1
+         */
+        public double getFailureRate() {
+            long all = numRequests + numFailures;
+            return all == 0 ? 0 : (double)numFailures / all;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.myzhan.locust4j.stats;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -7,6 +8,7 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -14,13 +16,24 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
-import com.github.myzhan.locust4j.utils.Utils;
+import com.github.myzhan.locust4j.message.PackedValue;
+import com.github.myzhan.locust4j.message.ReusableBufferPacker;
+import com.github.myzhan.locust4j.ratelimit.AbstractRateLimiter;
+import com.github.myzhan.locust4j.utils.Clock;
+import org.msgpack.core.MessagePacker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Stats collects test results from reportSuccessQueue and reportFailureQueue and reports to Runner every 3 seconds.
+ * Stats collects test results and reports to Runner every 3 seconds.
+ *
+ * User threads record test results into shards, which are striped by thread, so they don't contend with each other
+ * or with the stats thread. The stats thread merges all the shards only when it's time to report.
+ *
+ * Reports only contain what happened since the last report. They are packed straight from the entries into a reused
+ * buffer, then the entries are reset in place.
  *
  * @author myzhan
  */
@@ -28,16 +41,50 @@ public class Stats implements Runnable {
 
     private static final Logger logger = LoggerFactory.getLogger(Stats.class);
 
-    private Map<String, StatsEntry> entries;
-    private Map<String, StatsError> errors;
+    /**
+     * A few shards per core is enough to keep user threads away from each other.
+     */
+    private static final int SHARDS_PER_PROCESSOR = 4;
+
+    /**
+     * Locust workers report to the master every 3 seconds by default.
+     */
+    public static final long DEFAULT_REPORT_INTERVAL = 3000;
+
+    /**
+     * Entries are indexed by method first and then by name, so looking up an entry doesn't need to build a key.
+     */
+    private Map<String, Map<String, StatsEntry>> entries;
+    private Map<StatsErrorKey, StatsError> errors;
+    private final StatsErrorKey errorKey = new StatsErrorKey();
     private StatsEntry total;
 
-    private final ConcurrentLinkedQueue<RequestSuccess> reportSuccessQueue;
-    private final ConcurrentLinkedQueue<RequestFailure> reportFailureQueue;
+    /**
+     * A shard is owned by the thread that marks its slot in shardOwned, and is swapped with the spare shard
+     * by the stats thread when it's time to report.
+     */
+    private final StatsShard[] shards;
+    private final AtomicIntegerArray shardOwned;
+    private final int shardMask;
+    private StatsShard spareShard;
+
+    private final Map<String, Map<String, Endpoint>> endpoints;
+    private final ReusableBufferPacker reportPacker;
+    private int endpointCount;
+
     private final ConcurrentLinkedQueue<Boolean> clearStatsQueue;
     private final ConcurrentLinkedQueue<Boolean> timeToReportQueue;
+    private final ConcurrentLinkedQueue<Boolean> timeToCloseWindowQueue;
     private final BlockingQueue<Map<String, Object>> messageToRunnerQueue;
 
+    private final List<StatsListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<StatsWindowListener> windowListeners = new CopyOnWriteArrayList<>();
+    private final StatsWindow window = new StatsWindow();
+    private volatile long reportInterval = DEFAULT_REPORT_INTERVAL;
+    private volatile long windowInterval = 0;
+    private volatile boolean coordinatedOmissionCorrected = false;
+    private volatile long expectedInterval = 0;
+
     private ExecutorService threadPool;
     private final AtomicInteger threadNumber;
     private final Object lock = new Object();
@@ -46,10 +93,20 @@ public class Stats implements Runnable {
      * Probably, you don't need to create Stats unless you are writing unit tests.
      */
     public Stats() {
-        reportSuccessQueue = new ConcurrentLinkedQueue<>();
-        reportFailureQueue = new ConcurrentLinkedQueue<>();
+        int shardCount = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * SHARDS_PER_PROCESSOR - 1) << 1;
+        shards = new StatsShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new StatsShard();
+        }
+        shardOwned = new AtomicIntegerArray(shardCount);
+        shardMask = shardCount - 1;
+        spareShard = new StatsShard();
+        endpoints = new HashMap<>(8);
+        reportPacker = new ReusableBufferPacker();
+
         clearStatsQueue = new ConcurrentLinkedQueue<>();
         timeToReportQueue = new ConcurrentLinkedQueue<>();
+        timeToCloseWindowQueue = new ConcurrentLinkedQueue<>();
         messageToRunnerQueue = new LinkedBlockingDeque<>();
         threadNumber = new AtomicInteger();
 
@@ -82,14 +139,6 @@ public class Stats implements Runnable {
         threadPool.shutdownNow();
     }
 
-    public Queue<RequestSuccess> getReportSuccessQueue() {
-        return this.reportSuccessQueue;
-    }
-
-    public Queue<RequestFailure> getReportFailureQueue() {
-        return this.reportFailureQueue;
-    }
-
     public Queue<Boolean> getClearStatsQueue() {
         return this.clearStatsQueue;
     }
@@ -108,6 +157,9 @@ public class Stats implements Runnable {
         synchronized (lock) {
             try {
                 lock.wait();
+            } catch (InterruptedException ex) {
+                // stats is stopped
+                Thread.currentThread().interrupt();
             } catch (Exception ex) {
                 logger.error(ex.getMessage());
             }
@@ -115,42 +167,259 @@ public class Stats implements Runnable {
     }
 
     /**
-     * User code reports successful and failed records to Stats.
-     * If the sending speed is too fast, single-threaded stats may be a bottleneck and reports wrong RPS.
+     * Record a successful request into the shard of the current thread.
+     *
+     * @param method        request type
+     * @param name          request name
+     * @param responseTime  response time in millis
+     * @param contentLength content length in bytes
+     */
+    public void recordSuccess(String method, String name, long responseTime, long contentLength) {
+        if (this.coordinatedOmissionCorrected) {
+            responseTime += this.pollScheduleDelay();
+        }
+        int index = this.acquireShard();
+        try {
+            this.shards[index].logRequest(method, name, responseTime, contentLength, this.expectedInterval);
+        } finally {
+            this.releaseShard(index);
+        }
+    }
+
+    /**
+     * Record a batch of successful requests into the shard of the current thread in one go, so a client that has
+     * already timed a batch, like a pipeline of commands, doesn't record them one by one.
+     * Batches are recorded as they are timed, without coordinated omission correction.
+     *
+     * @param method        request type
+     * @param name          request name
+     * @param responseTimes response times in millis, only the first count ones are used
+     * @param count         number of requests in the batch
+     * @param contentLength content length of the whole batch in bytes
+     * @since 2.1.0
+     */
+    public void recordSuccessBatch(String method, String name, long[] responseTimes, int count, long contentLength) {
+        if (count > responseTimes.length) {
+            throw new IllegalArgumentException("Count is larger than the number of response times");
+        }
+        if (this.coordinatedOmissionCorrected) {
+            // drop the delay, so it isn't added to the next request
+            this.pollScheduleDelay();
+        }
+        int index = this.acquireShard();
+        try {
+            this.shards[index].logBatch(method, name, responseTimes, count, contentLength);
+        } finally {
+            this.releaseShard(index);
+        }
+    }
+
+    /**
+     * Record a batch of successful requests, which has been counted into a histogram, into the shard of the current
+     * thread in one go. The histogram is merged, it can be cleared and reused after this call returns.
+     *
+     * @param method        request type
+     * @param name          request name
+     * @param responseTimes response times of the batch
+     * @param contentLength content length of the whole batch in bytes
+     * @since 2.1.0
+     */
+    public void recordSuccessBatch(String method, String name, ResponseTimeHistogram responseTimes,
+                                   long contentLength) {
+        if (this.coordinatedOmissionCorrected) {
+            this.pollScheduleDelay();
+        }
+        int index = this.acquireShard();
+        try {
+            this.shards[index].logBatch(method, name, responseTimes, contentLength);
+        } finally {
+            this.releaseShard(index);
+        }
+    }
+
+    /**
+     * Record a failed request into the shard of the current thread.
+     *
+     * @param method       request type
+     * @param name         request name
+     * @param responseTime response time in millis
+     * @param error        error message
+     */
+    public void recordFailure(String method, String name, long responseTime, String error) {
+        int index = this.acquireShard();
+        try {
+            this.shards[index].logError(method, name, error);
+        } finally {
+            this.releaseShard(index);
+        }
+    }
+
+    /**
+     * Correct the coordinated omission of response times. Successful requests are recorded from the time they were
+     * scheduled by the rate limiter, rather than the time they actually started, so the time waiting for a busy
+     * thread counts. Only rate limiters that schedule permits, like
+     * {@link com.github.myzhan.locust4j.ratelimit.PacingRateLimiter}, know the scheduled time.
+     *
+     * @param corrected        correct response times or not
+     * @param expectedInterval if positive, also add the samples that would have been sent at this interval while a
+     *                         slow request was in flight, in millis
+     * @since 2.1.0
+     */
+    public void setCoordinatedOmissionCorrection(boolean corrected, long expectedInterval) {
+        this.coordinatedOmissionCorrected = corrected;
+        this.expectedInterval = corrected ? expectedInterval : 0;
+    }
+
+    public boolean isCoordinatedOmissionCorrected() {
+        return this.coordinatedOmissionCorrected;
+    }
+
+    /**
+     * @return millis the current request started behind its schedule
+     */
+    long pollScheduleDelay() {
+        return TimeUnit.NANOSECONDS.toMillis(AbstractRateLimiter.pollScheduleDelay());
+    }
+
+    /**
+     * Get the handle of an endpoint, handles are created once and cached.
+     *
+     * @param method request type
+     * @param name   request name
+     * @return the handle
+     */
+    public Endpoint endpoint(String method, String name) {
+        synchronized (this.endpoints) {
+            Map<String, Endpoint> endpointsOfMethod = StatsEntries.ofMethod(this.endpoints, method);
+            Endpoint endpoint = endpointsOfMethod.get(name);
+            if (null == endpoint) {
+                endpoint = new Endpoint(this, method, name, this.endpointCount++);
+                endpointsOfMethod.put(name, endpoint);
+            }
+            return endpoint;
+        }
+    }
+
+    protected void recordSuccess(Endpoint endpoint, long responseTime, long contentLength) {
+        if (this.coordinatedOmissionCorrected) {
+            responseTime += this.pollScheduleDelay();
+        }
+        int index = this.acquireShard();
+        try {
+            this.shards[index].logRequest(endpoint, responseTime, contentLength, this.expectedInterval);
+        } finally {
+            this.releaseShard(index);
+        }
+    }
+
+    protected void recordFailure(Endpoint endpoint, long responseTime, String error) {
+        int index = this.acquireShard();
+        try {
+            this.shards[index].logError(endpoint, error);
+        } finally {
+            this.releaseShard(index);
+        }
+    }
+
+    /**
+     * Take the ownership of a shard, starting from the slot of the current thread.
+     * If the shard is owned by another thread, try the next one instead of waiting for it.
+     *
+     * @return index of the owned shard
+     */
+    private int acquireShard() {
+        int index = (int)Thread.currentThread().getId() & shardMask;
+        int attempts = 0;
+        while (!shardOwned.compareAndSet(index, 0, 1)) {
+            index = (index + 1) & shardMask;
+            if (++attempts > shardMask) {
+                // all the shards are busy
+                attempts = 0;
+                Thread.yield();
+            }
+        }
+        return index;
+    }
+
+    private void releaseShard(int index) {
+        // publishes what we recorded to the next owner of this shard
+        shardOwned.set(index, 0);
+    }
+
+    /**
+     * Swap each shard with the spare one, and merge it into stats or drop it.
+     * Shards are merged into the current window, which is closed and then added up into stats.
+     * Only the stats thread, or tests, should call this method.
+     *
+     * @param merge merge the shards into stats, or drop them
+     */
+    protected synchronized void drainShards(boolean merge) {
+        for (int i = 0; i < shards.length; i++) {
+            while (!shardOwned.compareAndSet(i, 0, 1)) {
+                Thread.yield();
+            }
+            StatsShard shard = shards[i];
+            shards[i] = spareShard;
+            releaseShard(i);
+
+            if (merge) {
+                shard.drainTo(this);
+            } else {
+                shard.clear();
+            }
+            spareShard = shard;
+        }
+        if (merge) {
+            this.closeWindow();
+        }
+    }
+
+    private void closeWindow() {
+        this.window.close(Clock.currentTimeMillis());
+        for (StatsWindowListener listener : this.windowListeners) {
+            try {
+                listener.onWindow(this.window);
+            } catch (Exception ex) {
+                logger.error("Error in the stats window listener", ex);
+            }
+        }
+        this.window.drainTo(this);
+    }
+
+    /**
+     * Stats thread waits for signals of clearing stats and reporting.
+     * Test results are merged from shards right before reporting, instead of one by one.
      */
     @Override
     public void run() {
         String name = Thread.currentThread().getName();
         Thread.currentThread().setName(name + "stats");
 
-        while (true) {
+        while (!Thread.currentThread().isInterrupted()) {
 
             boolean allEmpty = true;
 
-            RequestSuccess successMessage = reportSuccessQueue.poll();
-            if (successMessage != null) {
-                this.logRequest(successMessage.getRequestType(), successMessage.getName(),
-                    successMessage.getResponseTime()
-                    , successMessage.getContentLength());
-                allEmpty = false;
-            }
-
-            RequestFailure failureMessage = reportFailureQueue.poll();
-            if (null != failureMessage) {
-                this.logError(failureMessage.getRequestType(), failureMessage.getName(), failureMessage.getError());
-                allEmpty = false;
-            }
-
             Boolean needToClearStats = clearStatsQueue.poll();
             if (null != needToClearStats && needToClearStats) {
                 this.clearAll();
                 allEmpty = false;
             }
 
+            Boolean timeToCloseWindow = timeToCloseWindowQueue.poll();
+            if (null != timeToCloseWindow) {
+                this.drainShards(true);
+                allEmpty = false;
+            }
+
             Boolean timeToReport = timeToReportQueue.poll();
             if (null != timeToReport) {
-                Map<String, Object> data = this.collectReportData();
-                messageToRunnerQueue.add(data);
+                this.drainShards(true);
+                this.notifyListeners();
+                try {
+                    messageToRunnerQueue.add(this.collectReportData());
+                } catch (IOException ex) {
+                    logger.error("Error while packing the report", ex);
+                }
                 allEmpty = false;
             }
 
@@ -161,18 +430,95 @@ public class Stats implements Runnable {
         }
     }
 
+    /**
+     * Set the interval of reporting to the master, which is also the granularity of the charts of locust.
+     * It takes effect from the next report.
+     *
+     * @param reportInterval interval in millis, {@link #DEFAULT_REPORT_INTERVAL} by default
+     * @since 2.1.0
+     */
+    public void setReportInterval(long reportInterval) {
+        if (reportInterval <= 0) {
+            throw new IllegalArgumentException("Report interval must be positive");
+        }
+        this.reportInterval = reportInterval;
+    }
+
+    public long getReportInterval() {
+        return this.reportInterval;
+    }
+
+    /**
+     * Close windows of test results at this interval, and pass them to {@link StatsWindowListener}s, without sending
+     * more to the master. Windows are also closed when it's time to report, so a window is never longer than the
+     * report interval.
+     *
+     * @param windowInterval interval in millis like 100, or 0 to close windows only when it's time to report
+     * @since 2.1.0
+     */
+    public void setWindowInterval(long windowInterval) {
+        if (windowInterval < 0) {
+            throw new IllegalArgumentException("Window interval must not be negative");
+        }
+        this.windowInterval = windowInterval;
+    }
+
+    public long getWindowInterval() {
+        return this.windowInterval;
+    }
+
+    /**
+     * Listen to test results window by window.
+     *
+     * @param listener the listener
+     * @since 2.1.0
+     */
+    public void addWindowListener(StatsWindowListener listener) {
+        this.windowListeners.add(listener);
+    }
+
+    /**
+     * @param listener the listener to remove
+     * @since 2.1.0
+     */
+    public void removeWindowListener(StatsWindowListener listener) {
+        this.windowListeners.remove(listener);
+    }
+
+    /**
+     * Listen to test results since the last report, when it's time to report.
+     *
+     * @param listener the listener
+     * @since 2.1.0
+     */
+    public void addListener(StatsListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * @param listener the listener to remove
+     * @since 2.1.0
+     */
+    public void removeListener(StatsListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    protected void notifyListeners() {
+        for (StatsListener listener : this.listeners) {
+            try {
+                listener.onReport(this.total);
+            } catch (Exception ex) {
+                logger.error("Error in the stats listener", ex);
+            }
+        }
+    }
+
     protected StatsEntry getTotal() {
         return this.total;
     }
 
     protected StatsEntry get(String name, String method) {
-        StatsEntry entry = this.entries.get(name + method);
-        if (null == entry) {
-            entry = new StatsEntry(name, method);
-            entry.reset();
-            this.entries.put(name + method, entry);
-        }
-        return entry;
+        return StatsEntries.getOrCreate(this.entries, name, method);
     }
 
     public void logRequest(String method, String name, long responseTime, long contentLength) {
@@ -184,19 +530,28 @@ public class Stats implements Runnable {
         this.total.logError(error);
         this.get(name, method).logError(error);
 
-        String key = Utils.md5(method, name, error);
-        if (null == key) {
-            key = method + name + error;
-        }
-        StatsError entry = this.errors.get(key);
+        this.getError(method, name, error).occured();
+    }
+
+    protected void merge(StatsEntry entry) {
+        this.window.merge(entry);
+    }
+
+    protected void merge(StatsError error) {
+        this.getError(error.method, error.name, error.error).merge(error);
+    }
+
+    private StatsError getError(String method, String name, String error) {
+        StatsError entry = this.errors.get(this.errorKey.set(method, name, error));
         if (null == entry) {
             entry = new StatsError(name, method, error);
-            this.errors.put(key, entry);
+            this.errors.put(this.errorKey.copy(), entry);
         }
-        entry.occured();
+        return entry;
     }
 
     public void clearAll() {
+        this.drainShards(false);
         this.total = new StatsEntry("Total");
         this.total.reset();
         this.entries = new HashMap<>(8);
@@ -205,10 +560,11 @@ public class Stats implements Runnable {
 
     protected List<Map<String, Object>> serializeStats() {
         List<Map<String, Object>> entries = new ArrayList<>(this.entries.size());
-        for (Map.Entry<String, StatsEntry> item : this.entries.entrySet()) {
-            StatsEntry entry = item.getValue();
-            if (!(entry.getNumRequests() == 0 && entry.getNumFailures() == 0)) {
-                entries.add(entry.getStrippedReport());
+        for (Map<String, StatsEntry> entriesOfMethod : this.entries.values()) {
+            for (StatsEntry entry : entriesOfMethod.values()) {
+                if (!(entry.getNumRequests() == 0 && entry.getNumFailures() == 0)) {
+                    entries.add(entry.getStrippedReport());
+                }
             }
         }
         return entries;
@@ -216,21 +572,71 @@ public class Stats implements Runnable {
 
     public Map<String, Map<String, Object>> serializeErrors() {
         Map<String, Map<String, Object>> errors = new HashMap<>(8);
-        for (Map.Entry<String, StatsError> item : this.errors.entrySet()) {
-            String key = item.getKey();
-            StatsError error = item.getValue();
-            errors.put(key, error.toMap());
+        for (StatsError error : this.errors.values()) {
+            errors.put(error.getKey(), error.toMap());
         }
         return errors;
     }
 
-    protected Map<String, Object> collectReportData() {
-        Map<String, Object> data = new HashMap<>(3);
+    private void packStats(MessagePacker packer) throws IOException {
+        int size = 0;
+        for (Map<String, StatsEntry> entriesOfMethod : this.entries.values()) {
+            for (StatsEntry entry : entriesOfMethod.values()) {
+                if (!(entry.getNumRequests() == 0 && entry.getNumFailures() == 0)) {
+                    size++;
+                }
+            }
+        }
+        packer.packArrayHeader(size);
+        for (Map<String, StatsEntry> entriesOfMethod : this.entries.values()) {
+            for (StatsEntry entry : entriesOfMethod.values()) {
+                if (!(entry.getNumRequests() == 0 && entry.getNumFailures() == 0)) {
+                    entry.pack(packer);
+                    entry.reset();
+                }
+            }
+        }
+    }
 
-        data.put("stats", this.serializeStats());
-        data.put("stats_total", this.total.getStrippedReport());
-        data.put("errors", this.serializeErrors());
+    private void packErrors(MessagePacker packer) throws IOException {
+        int size = 0;
+        for (StatsError error : this.errors.values()) {
+            if (error.occurrences > 0) {
+                size++;
+            }
+        }
+        packer.packMapHeader(size);
+        for (StatsError error : this.errors.values()) {
+            if (error.occurrences > 0) {
+                packer.packString(error.getKey());
+                error.pack(packer);
+                error.reset();
+            }
+        }
+    }
 
+    /**
+     * Pack stats, stats_total and errors since the last report, and reset them.
+     *
+     * @return data of the stats message, without user_count
+     * @throws IOException if the packer fails to write
+     */
+    protected Map<String, Object> collectReportData() throws IOException {
+        ReusableBufferPacker packer = this.reportPacker;
+        packer.clear();
+        this.packStats(packer);
+        int statsLength = packer.getSize();
+        this.total.pack(packer);
+        this.total.reset();
+        int totalLength = packer.getSize() - statsLength;
+        this.packErrors(packer);
+        byte[] bytes = packer.toByteArray();
+
+        Map<String, Object> data = new HashMap<>(4);
+        data.put("stats", new PackedValue(bytes, 0, statsLength));
+        data.put("stats_total", new PackedValue(bytes, statsLength, totalLength));
+        data.put("errors", new PackedValue(bytes, statsLength + totalLength,
+            bytes.length - statsLength - totalLength));
         return data;
     }
 
@@ -239,27 +645,53 @@ public class Stats implements Runnable {
     }
 
     private static class StatsTimer implements Runnable {
-        private static final int SLAVE_REPORT_INTERVAL = 3000;
         protected Stats stats;
 
         private StatsTimer(Stats stats) {
             this.stats = stats;
         }
 
+        private static long nowInMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        }
+
         @Override
         public void run() {
             String name = Thread.currentThread().getName();
             Thread.currentThread().setName(name + "stats-timer");
 
+            long lastReport = nowInMillis();
+            long lastWindow = lastReport;
             while (true) {
+                // intervals are read every round, so changes take effect from the next report or window
+                long reportInterval = stats.reportInterval;
+                long windowInterval = stats.windowInterval;
+                long wakeUpTime = lastReport + reportInterval;
+                if (windowInterval > 0) {
+                    wakeUpTime = Math.min(wakeUpTime, lastWindow + windowInterval);
+                }
                 try {
-                    Thread.sleep(SLAVE_REPORT_INTERVAL);
+                    long sleepTime = wakeUpTime - nowInMillis();
+                    if (sleepTime > 0) {
+                        Thread.sleep(sleepTime);
+                    }
                 } catch (InterruptedException ex) {
                     return;
                 } catch (Exception ex) {
                     logger.error(ex.getMessage());
                 }
-                stats.timeToReportQueue.offer(true);
+
+                long now = nowInMillis();
+                if (now - lastReport >= reportInterval) {
+                    lastReport = now;
+                    lastWindow = now;
+                    stats.timeToReportQueue.offer(true);
+                } else if (windowInterval > 0 && now - lastWindow >= windowInterval) {
+                    lastWindow = now;
+                    stats.timeToCloseWindowQueue.offer(true);
+                } else {
+                    continue;
+                }
                 stats.wakeMeUp();
             }
         }
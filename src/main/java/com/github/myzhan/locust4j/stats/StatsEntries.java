@@ -0,0 +1,51 @@
+package com.github.myzhan.locust4j.stats;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lookups of values kept by method and then by name, like stats entries of endpoints.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+final class StatsEntries {
+
+    private StatsEntries() {
+    }
+
+    /**
+     * Get the values of a method, the map is created if it's absent.
+     *
+     * @param valuesByMethod values by method and then by name
+     * @param method         request type
+     * @return values of the method by name
+     */
+    static <V> Map<String, V> ofMethod(Map<String, Map<String, V>> valuesByMethod, String method) {
+        Map<String, V> valuesOfMethod = valuesByMethod.get(method);
+        if (null == valuesOfMethod) {
+            valuesOfMethod = new HashMap<>(8);
+            valuesByMethod.put(method, valuesOfMethod);
+        }
+        return valuesOfMethod;
+    }
+
+    /**
+     * Get the entry of an endpoint, a reset entry is created if it's absent.
+     *
+     * @param entries entries by method and then by name
+     * @param name    request name
+     * @param method  request type
+     * @return the entry
+     */
+    static StatsEntry getOrCreate(Map<String, Map<String, StatsEntry>> entries, String name, String method) {
+        Map<String, StatsEntry> entriesOfMethod = ofMethod(entries, method);
+        StatsEntry entry = entriesOfMethod.get(name);
+        if (null == entry) {
+            entry = new StatsEntry(name, method);
+            entry.reset();
+            entriesOfMethod.put(name, entry);
+        }
+        return entry;
+    }
+}
@@ -1,10 +1,12 @@
 package com.github.myzhan.locust4j.stats;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
 import com.github.myzhan.locust4j.message.LongIntMap;
-import com.github.myzhan.locust4j.utils.Utils;
+import com.github.myzhan.locust4j.utils.Clock;
+import org.msgpack.core.MessagePacker;
 
 /**
  * @author myzhan
@@ -17,9 +19,9 @@ public class StatsEntry {
     private long totalResponseTime;
     private long minResponseTime;
     private long maxResponseTime;
-    private LongIntMap numReqsPerSec;
-    private LongIntMap numFailPerSec;
-    private LongIntMap responseTimes;
+    private PerSecondCounter numReqsPerSec;
+    private PerSecondCounter numFailPerSec;
+    private ResponseTimeHistogram responseTimes;
     private long totalContentLength;
     private long startTime;
     private long lastRequestTimestamp;
@@ -33,20 +35,35 @@ public class StatsEntry {
         this.method = method;
     }
 
+    /**
+     * Reset all the fields, the histogram and counters are cleared in place for reuse.
+     */
     public void reset() {
-        this.startTime = Utils.currentTimeInSeconds();
+        this.startTime = Clock.currentTimeInSeconds();
         this.numRequests = 0;
         this.numFailures = 0;
         this.totalResponseTime = 0;
-        this.responseTimes = new LongIntMap();
+        if (null == this.responseTimes) {
+            this.responseTimes = new ResponseTimeHistogram();
+        } else {
+            this.responseTimes.clear();
+        }
         this.minResponseTime = 0;
         this.maxResponseTime = 0;
-        this.lastRequestTimestamp = Utils.currentTimeInSeconds();
-        this.numReqsPerSec = new LongIntMap();
-        this.numFailPerSec = new LongIntMap();
+        this.lastRequestTimestamp = Clock.currentTimeInSeconds();
+        this.numReqsPerSec = clearOrCreate(this.numReqsPerSec);
+        this.numFailPerSec = clearOrCreate(this.numFailPerSec);
         this.totalContentLength = 0;
     }
 
+    private static PerSecondCounter clearOrCreate(PerSecondCounter counter) {
+        if (null == counter) {
+            return new PerSecondCounter();
+        }
+        counter.clear();
+        return counter;
+    }
+
     public void log(long responseTime, long contentLength) {
         this.numRequests++;
         this.logTimeOfRequest();
@@ -54,9 +71,81 @@ public class StatsEntry {
         this.totalContentLength += contentLength;
     }
 
+    /**
+     * Add a batch of successful requests at once, like a pipeline of commands that a client has already timed.
+     *
+     * @param responseTimes response times in millis, only the first count ones are used
+     * @param count         number of requests in the batch
+     * @param contentLength content length of the whole batch in bytes
+     * @since 2.1.0
+     */
+    public void logBatch(long[] responseTimes, int count, long contentLength) {
+        if (count <= 0) {
+            return;
+        }
+        this.numRequests += count;
+        this.logTimeOfRequests(count);
+        for (int i = 0; i < count; i++) {
+            this.logResponseTime(responseTimes[i]);
+        }
+        this.totalContentLength += contentLength;
+    }
+
+    /**
+     * Add a batch of successful requests at once, which has been counted into a histogram by the client.
+     * The histogram only keeps rounded response times, so they are used for min, max and total response time.
+     *
+     * @param responseTimes response times of the batch
+     * @param contentLength content length of the whole batch in bytes
+     * @since 2.1.0
+     */
+    public void logBatch(ResponseTimeHistogram responseTimes, long contentLength) {
+        long count = responseTimes.getCount();
+        if (count == 0) {
+            return;
+        }
+        this.numRequests += count;
+        this.logTimeOfRequests((int)count);
+        this.totalResponseTime += responseTimes.getTotalResponseTime();
+
+        long min = responseTimes.getPercentile(0);
+        long max = responseTimes.getPercentile(1);
+        if (this.minResponseTime == 0 || min < this.minResponseTime) {
+            this.minResponseTime = min;
+        }
+        if (max > this.maxResponseTime) {
+            this.maxResponseTime = max;
+        }
+
+        this.responseTimes.merge(responseTimes);
+        this.totalContentLength += contentLength;
+    }
+
+    /**
+     * Add the samples that a client would have sent at the expected interval while this request was in flight,
+     * like recordValueWithExpectedInterval of HdrHistogram. Response times responseTime - expectedInterval,
+     * responseTime - 2 * expectedInterval, and so on down to expectedInterval are counted in the histogram only, so
+     * they raise the percentiles, but not the number of requests, total, min or max response time.
+     *
+     * @param responseTime     response time of the request in flight
+     * @param expectedInterval expected interval between requests, in millis
+     */
+    public void logMissingSamples(long responseTime, long expectedInterval) {
+        if (expectedInterval <= 0) {
+            return;
+        }
+        for (long missing = responseTime - expectedInterval; missing >= expectedInterval; missing -= expectedInterval) {
+            this.responseTimes.record(missing);
+        }
+    }
+
     public void logTimeOfRequest() {
-        long now = Utils.currentTimeInSeconds();
-        this.numReqsPerSec.add(now);
+        this.logTimeOfRequests(1);
+    }
+
+    private void logTimeOfRequests(int count) {
+        long now = Clock.currentTimeInSeconds();
+        this.numReqsPerSec.add(now, count);
         this.lastRequestTimestamp = now;
     }
 
@@ -75,25 +164,42 @@ public class StatsEntry {
             this.maxResponseTime = responseTime;
         }
 
-        long roundedResponseTime;
-
-        if (responseTime < 100) {
-            roundedResponseTime = responseTime;
-        } else if (responseTime < 1000) {
-            roundedResponseTime = Utils.round(responseTime, -1);
-        } else if (responseTime < 10000) {
-            roundedResponseTime = Utils.round(responseTime, -2);
-        } else {
-            roundedResponseTime = Utils.round(responseTime, -3);
-        }
-
-        this.responseTimes.add(roundedResponseTime);
+        this.responseTimes.record(responseTime);
     }
 
     public void logError(String error) {
         this.numFailures++;
-        long now = Utils.currentTimeInSeconds();
-        this.numFailPerSec.add(now);
+        long now = Clock.currentTimeInSeconds();
+        this.numFailPerSec.add(now, 1);
+    }
+
+    /**
+     * Add up test results of another entry, which is usually recorded by another thread.
+     *
+     * @param other the entry to merge from
+     */
+    public void merge(StatsEntry other) {
+        this.numRequests += other.numRequests;
+        this.numFailures += other.numFailures;
+        this.totalResponseTime += other.totalResponseTime;
+        this.totalContentLength += other.totalContentLength;
+
+        if (this.minResponseTime == 0 || (other.minResponseTime != 0 && other.minResponseTime < this.minResponseTime)) {
+            this.minResponseTime = other.minResponseTime;
+        }
+        if (other.maxResponseTime > this.maxResponseTime) {
+            this.maxResponseTime = other.maxResponseTime;
+        }
+        if (other.startTime < this.startTime) {
+            this.startTime = other.startTime;
+        }
+        if (other.lastRequestTimestamp > this.lastRequestTimestamp) {
+            this.lastRequestTimestamp = other.lastRequestTimestamp;
+        }
+
+        this.responseTimes.merge(other.responseTimes);
+        this.numReqsPerSec.merge(other.numReqsPerSec);
+        this.numFailPerSec.merge(other.numFailPerSec);
     }
 
     public Map<String, Object> serialize() {
@@ -111,12 +217,39 @@ public class StatsEntry {
         result.put("max_response_time", this.maxResponseTime);
         result.put("min_response_time", this.minResponseTime);
         result.put("total_content_length", this.totalContentLength);
-        result.put("response_times", this.responseTimes);
-        result.put("num_reqs_per_sec", this.numReqsPerSec);
-        result.put("num_fail_per_sec", this.numFailPerSec);
+        result.put("response_times", this.responseTimes.toLongIntMap());
+        result.put("num_reqs_per_sec", this.numReqsPerSec.toLongIntMap());
+        result.put("num_fail_per_sec", this.numFailPerSec.toLongIntMap());
         return result;
     }
 
+    /**
+     * Pack the same map as {@link #serialize()} does, straight from the fields.
+     *
+     * @param packer the packer to write to
+     * @throws IOException if the packer fails to write
+     */
+    public void pack(MessagePacker packer) throws IOException {
+        packer.packMapHeader(14);
+        packer.packString("name").packString(this.name);
+        packer.packString("method").packString(this.method);
+        packer.packString("last_request_timestamp").packLong(this.lastRequestTimestamp);
+        packer.packString("start_time").packLong(this.startTime);
+        packer.packString("num_requests").packLong(this.numRequests);
+        packer.packString("num_none_requests").packInt(0);
+        packer.packString("num_failures").packLong(this.numFailures);
+        packer.packString("total_response_time").packLong(this.totalResponseTime);
+        packer.packString("max_response_time").packLong(this.maxResponseTime);
+        packer.packString("min_response_time").packLong(this.minResponseTime);
+        packer.packString("total_content_length").packLong(this.totalContentLength);
+        packer.packString("response_times");
+        this.responseTimes.pack(packer);
+        packer.packString("num_reqs_per_sec");
+        this.numReqsPerSec.pack(packer);
+        packer.packString("num_fail_per_sec");
+        this.numFailPerSec.pack(packer);
+    }
+
     public Map<String, Object> getStrippedReport() {
         Map<String, Object> report = this.serialize();
         this.reset();
@@ -179,20 +312,44 @@ public class StatsEntry {
         this.maxResponseTime = maxResponseTime;
     }
 
+    /**
+     * @return a copy of requests per second, from timestamps in seconds to counts
+     */
     public LongIntMap getNumReqsPerSec() {
-        return numReqsPerSec;
+        return numReqsPerSec.toLongIntMap();
     }
 
     public void setNumReqsPerSec(LongIntMap numReqsPerSec) {
-        this.numReqsPerSec = numReqsPerSec;
+        this.numReqsPerSec = clearOrCreate(this.numReqsPerSec);
+        for (int slot = numReqsPerSec.nextSlot(0); slot >= 0; slot = numReqsPerSec.nextSlot(slot + 1)) {
+            this.numReqsPerSec.add(numReqsPerSec.keyAt(slot), numReqsPerSec.valueAt(slot));
+        }
     }
 
+    /**
+     * @return a copy of response times, from rounded response times to counts
+     */
     public LongIntMap getResponseTimes() {
-        return responseTimes;
+        return responseTimes.toLongIntMap();
     }
 
     public void setResponseTimes(LongIntMap responseTimes) {
-        this.responseTimes = responseTimes;
+        if (null == this.responseTimes) {
+            this.responseTimes = new ResponseTimeHistogram();
+        } else {
+            this.responseTimes.clear();
+        }
+        for (int slot = responseTimes.nextSlot(0); slot >= 0; slot = responseTimes.nextSlot(slot + 1)) {
+            this.responseTimes.record(responseTimes.keyAt(slot), responseTimes.valueAt(slot));
+        }
+    }
+
+    /**
+     * @return the histogram that response times are counted in, it's not a copy
+     * @since 2.1.0
+     */
+    public ResponseTimeHistogram getResponseTimeHistogram() {
+        return responseTimes;
     }
 
     public long getTotalContentLength() {
@@ -1,8 +1,12 @@
 package com.github.myzhan.locust4j.stats;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.github.myzhan.locust4j.utils.Utils;
+import org.msgpack.core.MessagePacker;
+
 /**
  * @author myzhan
  */
@@ -11,6 +15,7 @@ public class StatsError {
     protected String method;
     protected String error;
     protected long occurrences;
+    private String key;
 
     protected StatsError(String name, String method, String error) {
         this.name = name;
@@ -22,6 +27,37 @@ public class StatsError {
         this.occurrences++;
     }
 
+    protected void reset() {
+        this.occurrences = 0;
+    }
+
+    protected void merge(StatsError other) {
+        this.occurrences += other.occurrences;
+    }
+
+    /**
+     * The key of error reported to the master, it's computed once for each distinct error.
+     *
+     * @return md5 of method, name and error
+     */
+    protected String getKey() {
+        if (null == this.key) {
+            this.key = Utils.md5(this.method, this.name, this.error);
+            if (null == this.key) {
+                this.key = this.method + this.name + this.error;
+            }
+        }
+        return this.key;
+    }
+
+    protected void pack(MessagePacker packer) throws IOException {
+        packer.packMapHeader(4);
+        packer.packString("name").packString(this.name);
+        packer.packString("method").packString(this.method);
+        packer.packString("error").packString(this.error);
+        packer.packString("occurrences").packLong(this.occurrences);
+    }
+
     protected Map<String, Object> toMap() {
         Map<String, Object> m = new HashMap<>(5);
         m.put("name", this.name);
@@ -0,0 +1,54 @@
+package com.github.myzhan.locust4j.stats;
+
+/**
+ * Errors are grouped by (method, name, error). A {@link StatsErrorKey} compares the tuple structurally, it's much cheaper
+ * than hashing the tuple with MD5 for every failure.
+ *
+ * A key is mutable, so that the owner can reuse one instance for lookups, and only copies it when a new error occurs.
+ *
+ * @author myzhan
+ */
+final class StatsErrorKey {
+
+    private String method;
+    private String name;
+    private String error;
+    private int hash;
+
+    StatsErrorKey set(String method, String name, String error) {
+        this.method = method;
+        this.name = name;
+        this.error = error;
+        int h = method == null ? 0 : method.hashCode();
+        h = 31 * h + (name == null ? 0 : name.hashCode());
+        h = 31 * h + (error == null ? 0 : error.hashCode());
+        this.hash = h;
+        return this;
+    }
+
+    StatsErrorKey copy() {
+        return new StatsErrorKey().set(method, name, error);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StatsErrorKey)) {
+            return false;
+        }
+        StatsErrorKey other = (StatsErrorKey)o;
+        return hash == other.hash && equals(method, other.method) && equals(name, other.name)
+            && equals(error, other.error);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.myzhan.locust4j.stats;
+
+/**
+ * A {@link StatsListener} receives test results in process, like rate limiters that adapt to the target.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public interface StatsListener {
+
+    /**
+     * Called by the stats thread when it's time to report, with what happened since the last report.
+     * The entry is reset after the call, read it but don't keep it.
+     *
+     * @param total the total entry of all the requests
+     */
+    void onReport(StatsEntry total);
+}
@@ -0,0 +1,121 @@
+package com.github.myzhan.locust4j.stats;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link StatsShard} accumulates test results recorded by user threads.
+ * Only one thread owns a shard at a time, so recording into a shard needs no synchronization.
+ * The stats thread merges all the shards into {@link Stats} when it's time to report.
+ *
+ * @author myzhan
+ */
+class StatsShard {
+
+    /**
+     * Entries are indexed by method first and then by name, so looking up an entry doesn't need to build a key.
+     */
+    private final Map<String, Map<String, StatsEntry>> entries;
+    private final Map<StatsErrorKey, StatsError> errors;
+    private final StatsErrorKey errorKey;
+
+    /**
+     * Entries of endpoints indexed by their ids, it's a cache of entries.
+     */
+    private StatsEntry[] entriesOfEndpoints;
+
+    StatsShard() {
+        this.entries = new HashMap<>(8);
+        this.errors = new HashMap<>(8);
+        this.errorKey = new StatsErrorKey();
+        this.entriesOfEndpoints = new StatsEntry[8];
+    }
+
+    private StatsEntry get(String name, String method) {
+        return StatsEntries.getOrCreate(this.entries, name, method);
+    }
+
+    private StatsEntry get(Endpoint endpoint) {
+        int id = endpoint.getId();
+        if (id >= this.entriesOfEndpoints.length) {
+            this.entriesOfEndpoints = Arrays.copyOf(this.entriesOfEndpoints,
+                Math.max(id + 1, this.entriesOfEndpoints.length << 1));
+        }
+        StatsEntry entry = this.entriesOfEndpoints[id];
+        if (null == entry) {
+            entry = this.get(endpoint.getName(), endpoint.getRequestType());
+            this.entriesOfEndpoints[id] = entry;
+        }
+        return entry;
+    }
+
+    void logRequest(Endpoint endpoint, long responseTime, long contentLength, long expectedInterval) {
+        StatsEntry entry = this.get(endpoint);
+        entry.log(responseTime, contentLength);
+        entry.logMissingSamples(responseTime, expectedInterval);
+    }
+
+    void logError(Endpoint endpoint, String error) {
+        this.logError(this.get(endpoint), endpoint.getRequestType(), endpoint.getName(), error);
+    }
+
+    void logRequest(String method, String name, long responseTime, long contentLength, long expectedInterval) {
+        StatsEntry entry = this.get(name, method);
+        entry.log(responseTime, contentLength);
+        entry.logMissingSamples(responseTime, expectedInterval);
+    }
+
+    void logBatch(String method, String name, long[] responseTimes, int count, long contentLength) {
+        this.get(name, method).logBatch(responseTimes, count, contentLength);
+    }
+
+    void logBatch(String method, String name, ResponseTimeHistogram responseTimes, long contentLength) {
+        this.get(name, method).logBatch(responseTimes, contentLength);
+    }
+
+    void logError(String method, String name, String error) {
+        this.logError(this.get(name, method), method, name, error);
+    }
+
+    private void logError(StatsEntry statsEntry, String method, String name, String error) {
+        statsEntry.logError(error);
+
+        StatsError entry = this.errors.get(this.errorKey.set(method, name, error));
+        if (null == entry) {
+            entry = new StatsError(name, method, error);
+            this.errors.put(this.errorKey.copy(), entry);
+        }
+        entry.occured();
+    }
+
+    /**
+     * Merge test results of this shard into stats, and reset this shard.
+     *
+     * @param stats the stats to merge into
+     */
+    void drainTo(Stats stats) {
+        for (Map<String, StatsEntry> entriesOfMethod : this.entries.values()) {
+            for (StatsEntry entry : entriesOfMethod.values()) {
+                if (entry.getNumRequests() == 0 && entry.getNumFailures() == 0) {
+                    continue;
+                }
+                stats.merge(entry);
+                entry.reset();
+            }
+        }
+        for (StatsError error : this.errors.values()) {
+            stats.merge(error);
+        }
+        this.errors.clear();
+    }
+
+    /**
+     * Drop all the test results of this shard.
+     */
+    void clear() {
+        this.entries.clear();
+        this.errors.clear();
+        Arrays.fill(this.entriesOfEndpoints, null);
+    }
+}
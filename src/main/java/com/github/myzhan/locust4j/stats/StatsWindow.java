@@ -0,0 +1,120 @@
+package com.github.myzhan.locust4j.stats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.myzhan.locust4j.utils.Clock;
+
+/**
+ * A {@link StatsWindow} holds the test results of a short window. Shards are drained into the window, which is passed
+ * to {@link StatsWindowListener}s and then added up into the entries reported to the master, so windows shorter than
+ * the report interval add no cost to recording.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public class StatsWindow {
+
+    private final StatsEntry total;
+
+    /**
+     * Entries are indexed by method first and then by name, like {@link Stats}.
+     */
+    private final Map<String, Map<String, StatsEntry>> entries;
+    private long startTime;
+    private long endTime;
+
+    StatsWindow() {
+        this.total = new StatsEntry("Total");
+        this.total.reset();
+        this.entries = new HashMap<>(8);
+        this.startTime = Clock.currentTimeMillis();
+    }
+
+    void merge(StatsEntry entry) {
+        this.total.merge(entry);
+        StatsEntries.getOrCreate(this.entries, entry.getName(), entry.getMethod()).merge(entry);
+    }
+
+    void close(long now) {
+        this.endTime = now;
+    }
+
+    /**
+     * Add up test results of this window into stats, and start the next window.
+     */
+    void drainTo(Stats stats) {
+        for (Map<String, StatsEntry> entriesOfMethod : this.entries.values()) {
+            for (StatsEntry entry : entriesOfMethod.values()) {
+                if (isEmpty(entry)) {
+                    continue;
+                }
+                stats.get(entry.getName(), entry.getMethod()).merge(entry);
+                entry.reset();
+            }
+        }
+        stats.getTotal().merge(this.total);
+        this.total.reset();
+        this.startTime = this.endTime;
+    }
+
+    private static boolean isEmpty(StatsEntry entry) {
+        return entry.getNumRequests() == 0 && entry.getNumFailures() == 0;
+    }
+
+    /**
+     * @return the total entry of all the requests in this window
+     */
+    public StatsEntry getTotal() {
+        return this.total;
+    }
+
+    /**
+     * @param method request type
+     * @param name   request name
+     * @return the entry, or null if nothing was recorded in this window
+     */
+    public StatsEntry getEntry(String method, String name) {
+        Map<String, StatsEntry> entriesOfMethod = this.entries.get(method);
+        StatsEntry entry = null == entriesOfMethod ? null : entriesOfMethod.get(name);
+        return null == entry || isEmpty(entry) ? null : entry;
+    }
+
+    /**
+     * @return entries with test results in this window
+     */
+    public List<StatsEntry> getEntries() {
+        List<StatsEntry> result = new ArrayList<>();
+        for (Map<String, StatsEntry> entriesOfMethod : this.entries.values()) {
+            for (StatsEntry entry : entriesOfMethod.values()) {
+                if (!isEmpty(entry)) {
+                    result.add(entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return start of this window, in millis since epoch
+     */
+    public long getStartTime() {
+        return this.startTime;
+    }
+
+    /**
+     * @return end of this window, in millis since epoch
+     */
+    public long getEndTime() {
+        return this.endTime;
+    }
+
+    /**
+     * @return length of this window in millis, windows are not exactly as long as the interval
+     */
+    public long getDuration() {
+        return this.endTime - this.startTime;
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.myzhan.locust4j.stats;
+
+/**
+ * A {@link StatsWindowListener} receives test results window by window, in process. Windows are closed at the window
+ * interval of {@link Stats#setWindowInterval(long)}, and when it's time to report.
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public interface StatsWindowListener {
+
+    /**
+     * Called by the stats thread when a window is closed. The window is reset after the call, read it but don't
+     * keep it or its entries.
+     *
+     * @param window test results of the window
+     */
+    void onWindow(StatsWindow window);
+}
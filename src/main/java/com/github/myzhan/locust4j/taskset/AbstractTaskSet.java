@@ -1,6 +1,7 @@
 package com.github.myzhan.locust4j.taskset;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.github.myzhan.locust4j.AbstractTask;
@@ -27,4 +28,12 @@ public abstract class AbstractTaskSet extends AbstractTask {
      */
     public abstract void addTask(AbstractTask task);
 
+    /**
+     * @return tasks in the task set
+     * @since 2.1.0
+     */
+    public List<AbstractTask> getTasks() {
+        return Collections.unmodifiableList(this.tasks);
+    }
+
 }
@@ -4,9 +4,11 @@ import java.util.Map;
 import java.util.NavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.github.myzhan.locust4j.AbstractTask;
+import com.github.myzhan.locust4j.ratelimit.AbstractRateLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,6 +69,11 @@ public class WeighingTaskSet extends AbstractTaskSet {
     public void execute() throws Exception {
         int roll = ThreadLocalRandom.current().nextInt(offset.get());
         AbstractTask task = getTask(roll);
+        AbstractRateLimiter rateLimiter = task.getRateLimiter();
+        if (null != rateLimiter && !rateLimiter.tryAcquire(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+            backOffFromStoppedRateLimiter();
+            return;
+        }
         task.execute();
     }
 }
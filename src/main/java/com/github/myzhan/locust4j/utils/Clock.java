@@ -0,0 +1,118 @@
+package com.github.myzhan.locust4j.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Clock} caches the current time in volatile fields, which are updated by a daemon ticker thread, so
+ * bookkeeping done for every request reads a field instead of calling System.currentTimeMillis(). The cached time
+ * lags behind by at most the resolution, which is {@link #DEFAULT_RESOLUTION} millis by default.
+ *
+ * Only stats use the cached time, {@link Utils#now()} stays exact.
+ *
+ * It also offers a stopwatch based on System.nanoTime() to measure response times, which is monotonic. A stopwatch
+ * is just a long, so timing a request doesn't allocate.
+ * <pre>
+ * long stopwatch = Clock.stopwatch();
+ * doRequest();
+ * Locust.getInstance().recordSuccess("http", "request", Clock.elapsedMillis(stopwatch), 0);
+ * </pre>
+ *
+ * @author myzhan
+ * @since 2.1.0
+ */
+public final class Clock {
+
+    /**
+     * How often the ticker updates the cached time by default, in millis.
+     */
+    public static final long DEFAULT_RESOLUTION = 10;
+
+    private static volatile long resolution = DEFAULT_RESOLUTION;
+    private static volatile long currentTimeMillis = System.currentTimeMillis();
+    private static volatile long currentTimeInSeconds = currentTimeMillis / 1000;
+    private static final Thread ticker;
+
+    static {
+        ticker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        Thread.sleep(resolution);
+                    } catch (InterruptedException ex) {
+                        // the resolution is changed, or someone interrupts all the threads, keep ticking
+                    }
+                    tick();
+                }
+            }
+        });
+        ticker.setName("locust4j-clock");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    private Clock() {
+    }
+
+    private static void tick() {
+        long now = System.currentTimeMillis();
+        currentTimeMillis = now;
+        currentTimeInSeconds = now / 1000;
+    }
+
+    /**
+     * Set how often the cached time is updated. Finer resolution costs more wake-ups of the ticker thread.
+     *
+     * @param millis resolution in millis
+     */
+    public static void setResolution(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Resolution must be positive");
+        }
+        resolution = millis;
+        tick();
+        ticker.interrupt();
+    }
+
+    /**
+     * @return resolution of the cached time in millis
+     */
+    public static long getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Get the cached timestamp in millis.
+     *
+     * @return current timestamp in millis
+     */
+    public static long currentTimeMillis() {
+        return currentTimeMillis;
+    }
+
+    /**
+     * Get the cached timestamp in seconds.
+     *
+     * @return current timestamp in seconds
+     */
+    public static long currentTimeInSeconds() {
+        return currentTimeInSeconds;
+    }
+
+    /**
+     * Start a stopwatch.
+     *
+     * @return the stopwatch, pass it to {@link #elapsedMillis(long)}
+     */
+    public static long stopwatch() {
+        return System.nanoTime();
+    }
+
+    /**
+     * @param stopwatch a stopwatch started by {@link #stopwatch()}
+     * @return millis since the stopwatch was started, like the response times recorded by locust4j
+     */
+    public static long elapsedMillis(long stopwatch) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stopwatch);
+    }
+}
@@ -0,0 +1,127 @@
+package com.github.myzhan.locust4j;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.github.myzhan.locust4j.runtime.Runner;
+import com.github.myzhan.locust4j.runtime.RunnerState;
+import com.github.myzhan.locust4j.taskset.WeighingTaskSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author myzhan
+ */
+public class TestAbstractAsyncTask {
+
+    private final BlockingQueue<AbstractAsyncTask.Completion> completions = new LinkedBlockingQueue<>();
+    private final AtomicBoolean stopped = new AtomicBoolean(false);
+
+    private final AbstractAsyncTask task = new AbstractAsyncTask() {
+        @Override
+        public int getMaxInFlight() {
+            return 2;
+        }
+
+        @Override
+        public void execute(Completion completion) {
+            completions.add(completion);
+        }
+
+        @Override
+        public int getWeight() {
+            return 1;
+        }
+
+        @Override
+        public String getName() {
+            return "async";
+        }
+
+        @Override
+        public void onStop() {
+            stopped.set(true);
+        }
+    };
+
+    @Before
+    public void before() {
+        Locust.getInstance().setRunner(new Runner() {
+            @Override
+            public RunnerState getState() {
+                return RunnerState.Running;
+            }
+        });
+    }
+
+    @After
+    public void after() {
+        Locust.getInstance().setRunner(null);
+    }
+
+    @Test
+    public void TestMaxInFlight() throws Exception {
+        Thread user = new Thread(task);
+        user.start();
+
+        AbstractAsyncTask.Completion first = completions.poll(1, TimeUnit.SECONDS);
+        AbstractAsyncTask.Completion second = completions.poll(1, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(completions.poll(50, TimeUnit.MILLISECONDS));
+
+        // a completion allows the user to start another request
+        first.success("async", "success", 10);
+        AbstractAsyncTask.Completion third = completions.poll(1, TimeUnit.SECONDS);
+        assertNotNull(third);
+        assertNull(completions.poll(50, TimeUnit.MILLISECONDS));
+
+        // completing twice doesn't free another permit
+        first.success("async", "success", 10);
+        assertNull(completions.poll(50, TimeUnit.MILLISECONDS));
+
+        // a stopping user waits for requests in flight
+        user.interrupt();
+        Thread.sleep(50);
+        assertTrue(user.isAlive());
+        second.failure("async", "failure", "timeout");
+        third.success("async", "success", 10);
+        user.join(1000);
+        assertTrue(stopped.get());
+        assertEquals(0, completions.size());
+    }
+
+    @Test
+    public void TestInTaskSet() throws Exception {
+        WeighingTaskSet taskSet = new WeighingTaskSet("set", 1);
+        taskSet.addTask(task);
+        Thread user = new Thread(taskSet);
+        user.start();
+
+        // permits are created by the first execution in the user thread
+        AbstractAsyncTask.Completion first = completions.poll(1, TimeUnit.SECONDS);
+        AbstractAsyncTask.Completion second = completions.poll(1, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(completions.poll(50, TimeUnit.MILLISECONDS));
+
+        first.success("async", "success", 10);
+        AbstractAsyncTask.Completion third = completions.poll(1, TimeUnit.SECONDS);
+        assertNotNull(third);
+
+        user.interrupt();
+        second.success("async", "success", 10);
+        third.success("async", "success", 10);
+        user.join(1000);
+        assertFalse(user.isAlive());
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.myzhan.locust4j;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.myzhan.locust4j.ratelimit.PacingRateLimiter;
+import com.github.myzhan.locust4j.runtime.Runner;
+import com.github.myzhan.locust4j.runtime.RunnerState;
+import com.github.myzhan.locust4j.stats.Stats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author myzhan
+ */
+public class TestAbstractTask {
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AbstractTask task = new AbstractTask() {
+        @Override
+        public int getWeight() {
+            return 1;
+        }
+
+        @Override
+        public String getName() {
+            return "stubborn";
+        }
+
+        @Override
+        public void onStart() {
+            running.incrementAndGet();
+        }
+
+        @Override
+        public void execute() {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException ex) {
+                // swallow the interrupt, like careless tasks do
+            }
+        }
+
+        @Override
+        public void onStop() {
+            running.decrementAndGet();
+        }
+    };
+
+    private static class TestRunner extends Runner {
+        @Override
+        public RunnerState getState() {
+            return RunnerState.Running;
+        }
+
+        private void spawn(int count) {
+            this.startSpawning(count);
+        }
+
+        private void shutdown() {
+            this.stop();
+        }
+    }
+
+    private TestRunner runner;
+
+    @Before
+    public void before() {
+        runner = new TestRunner();
+        runner.setStats(new Stats());
+        runner.setTasks(Collections.singletonList(task));
+        Locust.getInstance().setRunner(runner);
+    }
+
+    @After
+    public void after() {
+        runner.shutdown();
+        Locust.getInstance().setRunner(null);
+    }
+
+    private void waitForRunning(int expected) throws InterruptedException {
+        for (int i = 0; i < 200 && running.get() != expected; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void TestDespawnTaskSwallowingInterrupts() throws Exception {
+        runner.spawn(4);
+        waitForRunning(4);
+        assertEquals(4, running.get());
+
+        runner.spawn(1);
+        waitForRunning(1);
+        assertEquals(1, running.get());
+    }
+
+    @Test
+    public void TestBackOffFromStoppedRateLimiter() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        task.setRateLimiter(new PacingRateLimiter(100) {
+            @Override
+            public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+                attempts.incrementAndGet();
+                return super.tryAcquire(timeout, unit);
+            }
+        });
+        try {
+            // the rate limiter is never started, the worker waits instead of spinning
+            runner.spawn(1);
+            Thread.sleep(200);
+            assertTrue(attempts.get() > 0);
+            assertTrue(attempts.get() < 100);
+        } finally {
+            task.setRateLimiter(null);
+        }
+    }
+}
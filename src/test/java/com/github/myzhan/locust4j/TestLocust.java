@@ -4,9 +4,6 @@ import com.github.myzhan.locust4j.ratelimit.AbstractRateLimiter;
 import com.github.myzhan.locust4j.ratelimit.StableRateLimiter;
 import com.github.myzhan.locust4j.runtime.Runner;
 import com.github.myzhan.locust4j.runtime.RunnerState;
-import com.github.myzhan.locust4j.stats.RequestFailure;
-import com.github.myzhan.locust4j.stats.RequestSuccess;
-import com.github.myzhan.locust4j.stats.Stats;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -168,27 +165,6 @@ public class TestLocust {
         assertTrue("onStop must be called", task.onStopCalled);
     }
 
-    @Test
-    public void TestRecordSuccess() {
-        Locust.getInstance().recordSuccess("http", "success", 1, 10);
-        RequestSuccess success = Stats.getInstance().getReportSuccessQueue().poll();
-        assertEquals("http", success.getRequestType());
-        assertEquals("success", success.getName());
-        assertEquals(1, success.getResponseTime());
-        assertEquals(10, success.getContentLength());
-    }
-
-    @Test
-    public void TestRecordFailure() {
-        Stats.getInstance().getReportFailureQueue().clear();
-        Locust.getInstance().recordFailure("http", "failure", 1, "error");
-        RequestFailure failure = Stats.getInstance().getReportFailureQueue().poll();
-        assertEquals("http", failure.getRequestType());
-        assertEquals("failure", failure.getName());
-        assertEquals(1, failure.getResponseTime());
-        assertEquals("error", failure.getError());
-    }
-
     @Test
     public void TestGetRemoteParam() {
         assertEquals(null, Locust.getInstance().getRemoteParam("none"));
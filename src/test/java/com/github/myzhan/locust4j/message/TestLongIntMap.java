@@ -3,6 +3,8 @@ package com.github.myzhan.locust4j.message;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
 /**
  * @author myzhan
@@ -26,4 +28,88 @@ public class TestLongIntMap {
 
         assertEquals("{1000=2}", map.toString());
     }
+
+    @Test
+    public void TestResize() {
+        LongIntMap map = new LongIntMap(2);
+        for (long i = -100; i < 1000; i++) {
+            map.add(i, (int)(i & 7) + 1);
+        }
+
+        assertEquals(1100, map.size());
+        for (long i = -100; i < 1000; i++) {
+            assertEquals((int)(i & 7) + 1, (int)map.get(i));
+        }
+        assertNull(map.get(1000L));
+    }
+
+    @Test
+    public void TestMerge() {
+        LongIntMap map = new LongIntMap();
+        map.add(0L);
+        map.add(1L);
+
+        LongIntMap other = new LongIntMap();
+        other.add(1L);
+        other.add(2L, 3);
+        map.merge(other);
+
+        assertEquals(3, map.size());
+        assertEquals(1, (int)map.get(0L));
+        assertEquals(2, (int)map.get(1L));
+        assertEquals(3, (int)map.get(2L));
+    }
+
+    @Test
+    public void TestClear() {
+        LongIntMap map = new LongIntMap();
+        map.add(1000L);
+        map.clear();
+
+        assertEquals(0, map.size());
+        assertNull(map.get(1000L));
+        assertEquals(-1, map.nextSlot(0));
+
+        map.add(1000L);
+        assertEquals(1, (int)map.get(1000L));
+    }
+
+    @Test
+    public void TestIterate() {
+        LongIntMap map = new LongIntMap();
+        for (long i = 0; i < 100; i++) {
+            map.add(i * 1000, 2);
+        }
+
+        long keySum = 0;
+        int valueSum = 0;
+        int count = 0;
+        for (int slot = map.nextSlot(0); slot >= 0; slot = map.nextSlot(slot + 1)) {
+            keySum += map.keyAt(slot);
+            valueSum += map.valueAt(slot);
+            count++;
+        }
+        assertEquals(100, count);
+        assertEquals(4950000L, keySum);
+        assertEquals(200, valueSum);
+    }
+
+    @Test
+    public void TestAddNonPositive() {
+        LongIntMap map = new LongIntMap();
+        for (int delta : new int[] {0, -1}) {
+            try {
+                map.add(5L, delta);
+                fail("IllegalArgumentException is expected");
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+        map.add(7L);
+
+        // the size still matches the entries
+        assertEquals(1, map.size());
+        assertNull(map.get(5L));
+        assertEquals("{7=1}", map.toString());
+    }
 }
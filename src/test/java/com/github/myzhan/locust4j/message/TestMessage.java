@@ -1,12 +1,22 @@
 package com.github.myzhan.locust4j.message;
 
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.junit.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.value.ExtensionValue;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author myzhan
@@ -43,4 +53,57 @@ public class TestMessage {
         assertNull(message2.getData().get("null"));
         assertEquals("nodeId", message2.getNodeID());
     }
+
+    @Test
+    public void TestDecodeFullValueSpace() throws Exception {
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        packer.packArrayHeader(3);
+        packer.packString("spawn");
+        packer.packMapHeader(8);
+        packer.packString("int").packInt(42);
+        packer.packString("long").packLong(1L << 40);
+        packer.packString("uint64").packBigInteger(BigInteger.ONE.shiftLeft(63));
+        packer.packString("double").packDouble(0.1);
+        packer.packString("array").packArrayHeader(2).packInt(1).packString("two");
+        packer.packString("binary").packBinaryHeader(2).writePayload(new byte[] {1, 2});
+        packer.packString("map").packMapHeader(1).packInt(1).packString("one");
+        packer.packString("ext").packExtensionTypeHeader((byte)1, 1).writePayload(new byte[] {3});
+        packer.packString("nodeId");
+
+        // decode from the middle of a buffer
+        byte[] bytes = packer.toByteArray();
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 4);
+        buffer.position(2);
+        buffer.put(bytes);
+        buffer.position(2);
+        buffer.limit(2 + bytes.length);
+        Message message = new Message(buffer);
+
+        assertEquals("spawn", message.getType());
+        assertEquals("nodeId", message.getNodeID());
+
+        // fields are decoded one by one
+        assertEquals(42, message.get("int"));
+        assertEquals(1L << 40, message.get("long"));
+        assertEquals(BigInteger.ONE.shiftLeft(63), message.get("uint64"));
+        assertEquals(0.1, message.get("double"));
+        assertEquals(Arrays.asList(1, "two"), message.get("array"));
+        assertArrayEquals(new byte[] {1, 2}, (byte[])message.get("binary"));
+        assertEquals(Collections.singletonMap("1", "one"), message.get("map"));
+        assertTrue(message.get("ext") instanceof ExtensionValue);
+        assertNull(message.get("missing"));
+
+        assertEquals(8, message.getData().size());
+        assertEquals(42, message.getData().get("int"));
+    }
+
+    @Test(expected = IOException.class)
+    public void TestDecodeMalformedData() throws Exception {
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        packer.packArrayHeader(3);
+        packer.packString("spawn");
+        packer.packMapHeader(2);
+        packer.packString("int").packInt(42);
+        new Message(packer.toByteArray());
+    }
 }
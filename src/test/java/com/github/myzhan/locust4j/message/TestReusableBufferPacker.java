@@ -0,0 +1,77 @@
+package com.github.myzhan.locust4j.message;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author myzhan
+ */
+public class TestReusableBufferPacker {
+
+    private static final long[] LONGS = new long[] {
+        0, 1, 31, 32, 127, 128, 255, 256, 65535, 65536, (1L << 32) - 1, 1L << 32, Long.MAX_VALUE,
+        -1, -32, -33, -128, -129, -32768, -32769, Integer.MIN_VALUE, Integer.MIN_VALUE - 1L, Long.MIN_VALUE
+    };
+
+    private static void pack(MessagePacker packer) throws IOException {
+        packer.packArrayHeader(LONGS.length);
+        for (long v : LONGS) {
+            packer.packLong(v);
+            packer.packInt((int)v);
+        }
+        char[] chars = new char[70000];
+        Arrays.fill(chars, 'a');
+        String longString = new String(chars);
+        packer.packMapHeader(20);
+        for (int length : new int[] {0, 31, 32, 255, 256, 65535, 65536}) {
+            packer.packString(longString.substring(0, length));
+            packer.packNil();
+        }
+        packer.packString("你好");
+        packer.packDouble(0.5);
+        packer.packString("true");
+        packer.packBoolean(true);
+        packer.packArrayHeader(16);
+        packer.packMapHeader(65536);
+        packer.packFloat(0.5f);
+        packer.writePayload(new byte[] {1, 2, 3});
+        packer.packBinaryHeader(1);
+        packer.writePayload(new byte[] {4});
+        packer.packArrayHeader(65536);
+    }
+
+    @Test
+    public void TestSameAsMessagePacker() throws Exception {
+        MessageBufferPacker expected = MessagePack.newDefaultBufferPacker();
+        pack(expected);
+
+        ReusableBufferPacker packer = new ReusableBufferPacker();
+        pack(packer);
+        assertArrayEquals(expected.toByteArray(), packer.toByteArray());
+        assertEquals(expected.toByteArray().length, packer.getSize());
+    }
+
+    @Test
+    public void TestClear() throws Exception {
+        ReusableBufferPacker packer = new ReusableBufferPacker();
+        pack(packer);
+        byte[] first = packer.toByteArray();
+
+        packer.clear();
+        assertEquals(0, packer.getSize());
+        packer.packString("test");
+        assertArrayEquals(new byte[] {(byte)0xa4, 't', 'e', 's', 't'}, packer.toByteArray());
+
+        packer.clear();
+        pack(packer);
+        assertArrayEquals(first, packer.toByteArray());
+    }
+}
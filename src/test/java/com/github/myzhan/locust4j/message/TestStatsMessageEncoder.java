@@ -0,0 +1,83 @@
+package com.github.myzhan.locust4j.message;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author myzhan
+ */
+public class TestStatsMessageEncoder {
+
+    @Test
+    public void TestEncode() throws Exception {
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        packer.packArrayHeader(2);
+        packer.packString("GET");
+        packer.packInt(42);
+        byte[] packed = packer.toByteArray();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("stats", new PackedValue(packed, 0, packed.length));
+        data.put("errors", new HashMap<String, Object>());
+
+        StatsMessageEncoder encoder = new StatsMessageEncoder();
+        Message encoded = encoder.encode(data, 10, "nodeId");
+        assertEquals("stats", encoded.getType());
+        byte[] bytes = encoded.getBytes();
+        Message message = new Message(bytes);
+
+        assertEquals("stats", message.getType());
+        assertEquals("nodeId", message.getNodeID());
+        assertEquals(10, message.get("user_count"));
+        assertEquals(0, ((Map<?, ?>)message.get("errors")).size());
+        List<?> stats = (List<?>)message.get("stats");
+        assertEquals("GET", stats.get(0));
+        assertEquals(42, stats.get(1));
+        assertSame(bytes, message.getBytes());
+
+        // the encoder is reused, bytes encoded before are not changed
+        byte[] copy = bytes.clone();
+        data.remove("errors");
+        Message message2 = new Message(encoder.encode(data, 20, "nodeId").getBytes());
+        assertEquals(20, message2.get("user_count"));
+        assertEquals(2, message2.getData().size());
+        assertArrayEquals(copy, bytes);
+    }
+
+    @Test
+    public void TestEncodePackedValuesOfOneBuffer() throws Exception {
+        ReusableBufferPacker packer = new ReusableBufferPacker();
+        packer.packArrayHeader(1);
+        packer.packString("GET");
+        int statsLength = packer.getSize();
+        packer.packMapHeader(1);
+        packer.packString("num_requests");
+        packer.packLong(100000);
+        byte[] packed = packer.toByteArray();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("stats", new PackedValue(packed, 0, statsLength));
+        data.put("stats_total", new PackedValue(packed, statsLength, packed.length - statsLength));
+        data.put("errors", new HashMap<String, Object>());
+
+        byte[] bytes = new StatsMessageEncoder().encode(data, 10, "nodeId").getBytes();
+
+        // each packed value is copied into its place between the keys
+        Message message = new Message(bytes);
+        assertEquals(4, message.getData().size());
+        assertEquals(0, ((Map<?, ?>)message.get("errors")).size());
+        assertEquals("GET", ((List<?>)message.get("stats")).get(0));
+        assertEquals(100000, ((Map<?, ?>)message.get("stats_total")).get("num_requests"));
+        assertEquals(10, message.get("user_count"));
+        assertEquals("nodeId", message.getNodeID());
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.myzhan.locust4j.ratelimit;
+
+import com.github.myzhan.locust4j.stats.Stats;
+import com.github.myzhan.locust4j.stats.StatsEntry;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author myzhan
+ */
+public class TestAdaptiveRateLimiter {
+
+    private static StatsEntry report(int requests, int failures, long responseTime) {
+        StatsEntry total = new StatsEntry("Total");
+        total.reset();
+        for (int i = 0; i < requests; i++) {
+            total.log(responseTime, 0);
+        }
+        for (int i = 0; i < failures; i++) {
+            total.logError("error");
+        }
+        return total;
+    }
+
+    @Test
+    public void TestIncreaseAndBackOff() throws Exception {
+        AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter(new Stats(), 100, 10, 150, 20, 0.5, 0.01, 0.95,
+            200);
+        rateLimiter.start();
+        assertEquals(100, rateLimiter.getRate(), 0.001);
+        assertEquals(10000000, rateLimiter.getInterval());
+
+        // meets the SLO, the rate goes up by a step
+        Thread.sleep(10);
+        rateLimiter.onReport(report(100, 0, 50));
+        assertEquals(120, rateLimiter.getRate(), 0.001);
+        assertTrue(rateLimiter.getMaxSustainableRate() > 0);
+
+        // never goes above max rate
+        Thread.sleep(10);
+        rateLimiter.onReport(report(100, 0, 50));
+        Thread.sleep(10);
+        rateLimiter.onReport(report(100, 0, 50));
+        assertEquals(150, rateLimiter.getRate(), 0.001);
+
+        // too slow, back off
+        double maxSustainableRate = rateLimiter.getMaxSustainableRate();
+        Thread.sleep(10);
+        rateLimiter.onReport(report(100000, 0, 500));
+        assertEquals(75, rateLimiter.getRate(), 0.001);
+        assertEquals(maxSustainableRate, rateLimiter.getMaxSustainableRate(), 0.001);
+
+        // too many failures, back off
+        Thread.sleep(10);
+        rateLimiter.onReport(report(90, 10, 50));
+        assertEquals(37.5, rateLimiter.getRate(), 0.001);
+
+        rateLimiter.stop();
+    }
+
+    @Test
+    public void TestNotAchieved() throws Exception {
+        AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter(new Stats(), 100, 10, 1000, 20, 0.5, 0.01, 0.95,
+            200);
+        rateLimiter.start();
+        // users can't keep up with the rate, don't raise it
+        Thread.sleep(1000);
+        rateLimiter.onReport(report(10, 0, 50));
+        assertEquals(100, rateLimiter.getRate(), 0.001);
+        rateLimiter.stop();
+    }
+
+    private static void assertInvalid(double initialRate, double minRate, double maxRate, double rateStep,
+                                      double backOffRatio, double maxFailureRatio, double latencyPercentile) {
+        try {
+            new AdaptiveRateLimiter(new Stats(), initialRate, minRate, maxRate, rateStep, backOffRatio,
+                maxFailureRatio, latencyPercentile, 200);
+            fail("IllegalArgumentException is expected");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    private static void assertInvalidRates(double initialRate, double minRate, double maxRate) {
+        assertInvalid(initialRate, minRate, maxRate, 20, 0.5, 0.01, 0.95);
+    }
+
+    @Test
+    public void TestInvalidRates() {
+        assertInvalidRates(0, 0, 100);
+        assertInvalidRates(10, -1, 100);
+        assertInvalidRates(10, 1, Double.NaN);
+        assertInvalidRates(1, 10, 100);
+        assertInvalidRates(1000, 10, 100);
+    }
+
+    @Test
+    public void TestInvalidControl() {
+        // never climbs
+        assertInvalid(100, 10, 1000, 0, 0.5, 0.01, 0.95);
+        // never backs off
+        assertInvalid(100, 10, 1000, 20, 1, 0.01, 0.95);
+        assertInvalid(100, 10, 1000, 20, 0, 0.01, 0.95);
+        assertInvalid(100, 10, 1000, 20, 0.5, -0.01, 0.95);
+        assertInvalid(100, 10, 1000, 20, 0.5, 0.01, 0);
+        assertInvalid(100, 10, 1000, 20, 0.5, 0.01, 1.5);
+    }
+
+    @Test
+    public void TestRateIsClamped() throws Exception {
+        AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter(new Stats(), 100, 80, 100, 20, 0.5, 0.01, 0.95,
+            200);
+        rateLimiter.start();
+        // backs off to min rate, not half of the rate
+        Thread.sleep(10);
+        rateLimiter.onReport(report(100, 100, 50));
+        assertEquals(80, rateLimiter.getRate(), 0.001);
+        assertEquals(12500000, rateLimiter.getInterval());
+        rateLimiter.stop();
+    }
+}
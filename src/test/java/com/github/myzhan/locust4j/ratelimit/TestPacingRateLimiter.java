@@ -0,0 +1,135 @@
+package com.github.myzhan.locust4j.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author myzhan
+ */
+public class TestPacingRateLimiter {
+
+    @Test
+    public void TestAcquire() {
+        PacingRateLimiter rateLimiter = new PacingRateLimiter(100);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), rateLimiter.getInterval());
+        rateLimiter.start();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 11; i++) {
+            assertFalse(rateLimiter.acquire());
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // permits are spaced by 10ms, not given out at once
+        assertTrue(elapsed >= 100);
+        assertTrue(elapsed < 1000);
+
+        rateLimiter.stop();
+        assertTrue(rateLimiter.isStopped());
+    }
+
+    @Test
+    public void TestNoBurstAfterIdle() throws Exception {
+        PacingRateLimiter rateLimiter = new PacingRateLimiter(100);
+        rateLimiter.start();
+
+        Thread.sleep(100);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            assertFalse(rateLimiter.acquire());
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+        rateLimiter.stop();
+    }
+
+    @Test
+    public void TestInterrupted() {
+        PacingRateLimiter rateLimiter = new PacingRateLimiter(1, 1, TimeUnit.HOURS);
+        rateLimiter.start();
+
+        assertFalse(rateLimiter.acquire());
+        Thread.currentThread().interrupt();
+        assertTrue(rateLimiter.acquire());
+        assertTrue(Thread.interrupted());
+        rateLimiter.stop();
+    }
+
+    @Test
+    public void TestTryAcquire() throws Exception {
+        PacingRateLimiter rateLimiter = new PacingRateLimiter(1, 1, TimeUnit.HOURS);
+        rateLimiter.start();
+
+        assertTrue(rateLimiter.tryAcquire());
+        // the next permit is an hour later
+        assertFalse(rateLimiter.tryAcquire());
+        assertFalse(rateLimiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+
+        Thread.currentThread().interrupt();
+        try {
+            rateLimiter.tryAcquire(2, TimeUnit.HOURS);
+            fail("InterruptedException is expected");
+        } catch (InterruptedException ex) {
+            assertFalse(Thread.currentThread().isInterrupted());
+        }
+        rateLimiter.stop();
+    }
+
+    @Test
+    public void TestStopped() throws Exception {
+        PacingRateLimiter rateLimiter = new PacingRateLimiter(100);
+
+        // no permits before start
+        assertTrue(rateLimiter.isStopped());
+        assertTrue(rateLimiter.acquire());
+        assertFalse(rateLimiter.tryAcquire());
+        assertFalse(rateLimiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+
+        rateLimiter.start();
+        assertTrue(rateLimiter.tryAcquire(1, TimeUnit.SECONDS));
+
+        // no permits after stop
+        rateLimiter.stop();
+        assertTrue(rateLimiter.acquire());
+        assertFalse(rateLimiter.tryAcquire());
+        assertFalse(rateLimiter.tryAcquire(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void TestFirstPermitDelay() throws Exception {
+        final PacingRateLimiter rateLimiter = new PacingRateLimiter(100);
+        rateLimiter.start();
+        AbstractRateLimiter.pollScheduleDelay();
+
+        // the schedule begins with the first permit, not at start
+        Thread.sleep(100);
+        assertFalse(rateLimiter.acquire());
+        assertEquals(0, AbstractRateLimiter.pollScheduleDelay());
+
+        // the first permit of a newly spawned user is late by one interval at most
+        Thread.sleep(100);
+        final long[] delay = new long[1];
+        Thread user = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                rateLimiter.acquire();
+                delay[0] = AbstractRateLimiter.pollScheduleDelay();
+            }
+        });
+        user.start();
+        user.join();
+        assertTrue(delay[0] <= rateLimiter.getInterval());
+
+        // a busy user is still told how late its permit is
+        Thread.sleep(100);
+        assertFalse(rateLimiter.acquire());
+        assertTrue(AbstractRateLimiter.pollScheduleDelay() >= TimeUnit.MILLISECONDS.toNanos(50));
+        rateLimiter.stop();
+    }
+}
@@ -41,4 +41,58 @@ public class TestRampUpRateLimiter {
         abstractRateLimiter.stop();
         assertTrue(abstractRateLimiter.isStopped());
     }
+
+    @Test
+    public void TestTryAcquire() throws Exception {
+        AbstractRateLimiter abstractRateLimiter = new RampUpRateLimiter(3, 1, 1, TimeUnit.HOURS,
+                1, TimeUnit.HOURS);
+        abstractRateLimiter.start();
+
+        Thread.sleep(20);
+
+        assertTrue(abstractRateLimiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+        // running out of permits, it times out instead of waiting for the next refill
+        assertFalse(abstractRateLimiter.tryAcquire());
+        assertFalse(abstractRateLimiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+
+        abstractRateLimiter.stop();
+        assertFalse(abstractRateLimiter.tryAcquire(1, TimeUnit.HOURS));
+    }
+
+    @Test
+    public void TestAcquireInterrupted() {
+        AbstractRateLimiter abstractRateLimiter = new RampUpRateLimiter(3, 1, 1, TimeUnit.HOURS,
+                1, TimeUnit.HOURS);
+        abstractRateLimiter.start();
+
+        // the interrupt status is kept for the caller
+        Thread.currentThread().interrupt();
+        boolean blocked = false;
+        for (int i = 0; i < 4 && !blocked; i++) {
+            blocked = abstractRateLimiter.acquire();
+        }
+        assertTrue(blocked);
+        assertTrue(Thread.interrupted());
+
+        abstractRateLimiter.stop();
+    }
+
+    @Test
+    public void TestTryAcquireStopped() throws Exception {
+        AbstractRateLimiter abstractRateLimiter = new RampUpRateLimiter(3, 1, 1, TimeUnit.HOURS,
+                1, TimeUnit.HOURS);
+
+        // no permits before start
+        assertFalse(abstractRateLimiter.tryAcquire());
+        assertFalse(abstractRateLimiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+
+        abstractRateLimiter.start();
+        Thread.sleep(20);
+        assertTrue(abstractRateLimiter.tryAcquire());
+
+        // no permits after stop, even if some are left
+        abstractRateLimiter.stop();
+        assertFalse(abstractRateLimiter.tryAcquire());
+        assertFalse(abstractRateLimiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+    }
 }
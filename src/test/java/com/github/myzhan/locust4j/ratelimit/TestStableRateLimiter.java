@@ -1,9 +1,13 @@
 package com.github.myzhan.locust4j.ratelimit;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.junit.Test;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author myzhan
@@ -30,4 +34,82 @@ public class TestStableRateLimiter {
 
         assertTrue(abstractRateLimiter.isStopped());
     }
+
+    @Test
+    public void TestTryAcquire() throws Exception {
+        AbstractRateLimiter abstractRateLimiter = new StableRateLimiter(2, 1, TimeUnit.HOURS);
+        abstractRateLimiter.start();
+
+        Thread.sleep(10);
+
+        assertTrue(abstractRateLimiter.tryAcquire());
+        assertTrue(abstractRateLimiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+
+        // running out of permits, it times out instead of waiting for the next hour
+        assertFalse(abstractRateLimiter.tryAcquire());
+        long start = System.nanoTime();
+        assertFalse(abstractRateLimiter.tryAcquire(50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        abstractRateLimiter.stop();
+    }
+
+    @Test
+    public void TestTryAcquireInterrupted() throws Exception {
+        AbstractRateLimiter abstractRateLimiter = new StableRateLimiter(0, 1, TimeUnit.HOURS);
+        abstractRateLimiter.start();
+
+        Thread.currentThread().interrupt();
+        try {
+            abstractRateLimiter.tryAcquire(1, TimeUnit.HOURS);
+            fail("InterruptedException is expected");
+        } catch (InterruptedException ex) {
+            assertFalse(Thread.currentThread().isInterrupted());
+        }
+
+        abstractRateLimiter.stop();
+    }
+
+    @Test
+    public void TestStopWakesUpWaiters() throws Exception {
+        final AbstractRateLimiter abstractRateLimiter = new StableRateLimiter(0, 1, TimeUnit.HOURS);
+        abstractRateLimiter.start();
+
+        final AtomicBoolean acquired = new AtomicBoolean(true);
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    acquired.set(abstractRateLimiter.tryAcquire(1, TimeUnit.HOURS));
+                } catch (InterruptedException ex) {
+                    // not expected
+                }
+            }
+        });
+        waiter.start();
+        Thread.sleep(50);
+
+        abstractRateLimiter.stop();
+        waiter.join(1000);
+        assertFalse(waiter.isAlive());
+        assertFalse(acquired.get());
+    }
+
+    @Test
+    public void TestTryAcquireStopped() throws Exception {
+        AbstractRateLimiter abstractRateLimiter = new StableRateLimiter(2, 1, TimeUnit.HOURS);
+
+        // no permits before start
+        assertFalse(abstractRateLimiter.tryAcquire());
+        assertFalse(abstractRateLimiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+
+        abstractRateLimiter.start();
+        Thread.sleep(20);
+        assertTrue(abstractRateLimiter.tryAcquire());
+
+        // no permits after stop, even if some are left
+        abstractRateLimiter.stop();
+        assertFalse(abstractRateLimiter.tryAcquire());
+        assertFalse(abstractRateLimiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+    }
 }
@@ -0,0 +1,96 @@
+package com.github.myzhan.locust4j.rpc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.myzhan.locust4j.message.Message;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author myzhan
+ */
+public class TestInProcessClient {
+
+    @Test
+    public void TestPingPong() throws Exception {
+        final InProcessClient worker = new InProcessClient();
+        final InProcessClient master = worker.getPeer();
+        assertSame(worker, master.getPeer());
+
+        Thread echo = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 1000; i++) {
+                        master.send(master.recv());
+                    }
+                } catch (IOException ex) {
+                    fail(ex.getMessage());
+                }
+            }
+        });
+        echo.start();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("hello", "world");
+        for (int i = 0; i < 1000; i++) {
+            worker.send(new Message("test", data, null, "node"));
+            Message message = worker.recv();
+            assertEquals("test", message.getType());
+            assertEquals("node", message.getNodeID());
+            assertEquals(data, message.getData());
+        }
+        echo.join();
+    }
+
+    @Test
+    public void TestInterruptReceiver() throws Exception {
+        final InProcessClient client = new InProcessClient();
+        final AtomicReference<IOException> error = new AtomicReference<>();
+        Thread receiver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.recv();
+                } catch (IOException ex) {
+                    error.set(ex);
+                }
+            }
+        });
+        receiver.start();
+        Thread.sleep(50);
+        receiver.interrupt();
+        receiver.join(1000);
+
+        assertFalse(receiver.isAlive());
+        assertTrue(error.get() instanceof InterruptedIOException);
+    }
+
+    @Test
+    public void TestClose() throws Exception {
+        InProcessClient worker = new InProcessClient();
+        InProcessClient master = worker.getPeer();
+        worker.send(new Message("quit", null, null, "node"));
+        worker.close();
+
+        // messages sent before closing are still received
+        assertEquals("quit", master.recv().getType());
+        try {
+            worker.send(new Message("test", null, null, "node"));
+            fail("closed client shouldn't send");
+        } catch (IOException ex) {
+            // expected
+        }
+        try {
+            master.send(new Message("test", null, null, "node"));
+            fail("shouldn't send to a closed client");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.myzhan.locust4j.rpc;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.github.myzhan.locust4j.message.Message;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author myzhan
+ */
+public class TestNioClient {
+
+    @Test
+    public void TestPingPong() throws Exception {
+        int masterPort = ThreadLocalRandom.current().nextInt(1000) + 3072;
+
+        TestServer server = new TestServer("127.0.0.1", masterPort);
+        server.start();
+
+        Client client = new NioClient("127.0.0.1", masterPort, "testClient");
+        Map<String, Object> data = new HashMap<>();
+        data.put("hello", "world");
+        // long frames are used for messages longer than 255 bytes, and the read buffer grows beyond 64KB
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'a');
+        data.put("long", new String(chars));
+
+        client.send(new Message("test", data, null, "node"));
+        client.send(new Message("short", null, null, "node"));
+        Message message = client.recv();
+
+        assertEquals("test", message.getType());
+        assertEquals("node", message.getNodeID());
+        assertEquals(data, message.getData());
+        assertEquals("short", client.recv().getType());
+
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    public void TestSendFromThreads() throws Exception {
+        int masterPort = ThreadLocalRandom.current().nextInt(1000) + 4096;
+
+        TestServer server = new TestServer("127.0.0.1", masterPort);
+        server.start();
+
+        final Client client = new NioClient("127.0.0.1", masterPort, "testClient");
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final String nodeID = "node" + i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 50; j++) {
+                            client.send(new Message("test", null, null, nodeID));
+                        }
+                    } catch (IOException ex) {
+                        fail(ex.getMessage());
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // every message sent by threads is echoed once
+        for (int i = 0; i < threads.length * 50; i++) {
+            assertEquals("test", client.recv().getType());
+        }
+
+        client.close();
+        server.stop();
+    }
+
+    @Test(expected = IOException.class)
+    public void TestSendWithoutMaster() throws Exception {
+        int masterPort = ThreadLocalRandom.current().nextInt(1000) + 5120;
+        Client client = new NioClient("127.0.0.1", masterPort, "testClient");
+        client.send(new Message("test", null, null, "node"));
+    }
+}
@@ -23,6 +23,7 @@ public class TestServer {
     private ZMQ.Socket routerSocket;
 
     private Thread serverThread;
+    private volatile boolean running;
 
     public TestServer(String bindHost, int bindPort) {
         this.context = new ZContext();
@@ -33,13 +34,19 @@ public class TestServer {
     public void start() {
         routerSocket = context.createSocket(ZMQ.ROUTER);
         routerSocket.bind(String.format("tcp://%s:%d", bindHost, bindPort));
+        // interrupting the server thread may break the socket, so it polls the flag instead
+        routerSocket.setReceiveTimeOut(100);
+        running = true;
 
         serverThread = new Thread(new Runnable() {
             @Override
             public void run() {
                 try {
-                    while (true) {
+                    while (running) {
                         byte[] packet = routerSocket.recv();
+                        if (null == packet) {
+                            continue;
+                        }
                         if (Arrays.equals(packet, "testClient".getBytes())) {
                             routerSocket.sendMore(packet);
                             continue;
@@ -59,7 +66,12 @@ public class TestServer {
     }
 
     public void stop() {
-        serverThread.interrupt();
+        running = false;
+        try {
+            serverThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
         routerSocket.close();
         context.close();
     }
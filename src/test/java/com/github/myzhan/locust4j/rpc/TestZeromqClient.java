@@ -1,8 +1,10 @@
 package com.github.myzhan.locust4j.rpc;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import com.github.myzhan.locust4j.message.Message;
 import org.junit.Ignore;
@@ -39,4 +41,66 @@ public class TestZeromqClient {
         server.stop();
         client.close();
     }
+
+    @Test
+    public void TestSendFromThreads() throws Exception {
+        int masterPort = ThreadLocalRandom.current().nextInt(1000) + 2048;
+
+        TestServer server = new TestServer("0.0.0.0", masterPort);
+        server.start();
+
+        final Client client = new ZeromqClient("0.0.0.0", masterPort, "testClient");
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final String nodeID = "node" + i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 50; j++) {
+                            client.send(new Message("test", null, null, nodeID));
+                        }
+                    } catch (IOException ex) {
+                        fail(ex.getMessage());
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // every message sent by threads is echoed once
+        for (int i = 0; i < threads.length * 50; i++) {
+            assertEquals("test", client.recv().getType());
+        }
+
+        server.stop();
+        client.close();
+    }
+
+    @Test
+    public void TestSendWithoutWaitingForPoll() throws Exception {
+        int masterPort = ThreadLocalRandom.current().nextInt(1000) + 3072;
+
+        TestServer server = new TestServer("0.0.0.0", masterPort);
+        server.start();
+
+        Client client = new ZeromqClient("0.0.0.0", masterPort, "testClient");
+        // the first round trip waits for the connection
+        client.send(new Message("test", null, null, "node"));
+        assertEquals("test", client.recv().getType());
+
+        // each message wakes the I/O thread up, rather than waiting for the poll timeout of 100ms
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            client.send(new Message("test", null, null, "node"));
+            assertEquals("test", client.recv().getType());
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+
+        server.stop();
+        client.close();
+    }
 }
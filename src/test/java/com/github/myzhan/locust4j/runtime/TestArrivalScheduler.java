@@ -0,0 +1,116 @@
+package com.github.myzhan.locust4j.runtime;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.myzhan.locust4j.AbstractAsyncTask;
+import com.github.myzhan.locust4j.AbstractTask;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author myzhan
+ */
+public class TestArrivalScheduler {
+
+    private static class CountingTask extends AbstractTask {
+
+        private final AtomicInteger executed = new AtomicInteger();
+        private final long sleep;
+
+        private CountingTask(long sleep) {
+            this.sleep = sleep;
+        }
+
+        @Override
+        public int getWeight() {
+            return 1;
+        }
+
+        @Override
+        public String getName() {
+            return "counting";
+        }
+
+        @Override
+        public void execute() throws Exception {
+            executed.incrementAndGet();
+            Thread.sleep(sleep);
+        }
+    }
+
+    @Test
+    public void TestArrivalRate() throws Exception {
+        CountingTask task = new CountingTask(0);
+        ArrivalScheduler scheduler = new ArrivalScheduler(Collections.singletonList((AbstractTask)task),
+            new ArrivalRateProfile() {
+                @Override
+                public double getArrivalRate(long elapsedTime) {
+                    return 200;
+                }
+            }, 8);
+        scheduler.start();
+        Thread.sleep(500);
+        scheduler.stop();
+
+        // about 100 executions in 500ms
+        assertTrue(task.executed.get() >= 50);
+        assertTrue(task.executed.get() <= 110);
+        assertTrue(scheduler.getMissedArrivals() <= 10);
+    }
+
+    @Test
+    public void TestMissedArrivals() throws Exception {
+        // slow executions don't lower the arrival rate
+        CountingTask task = new CountingTask(200);
+        ArrivalScheduler scheduler = new ArrivalScheduler(Collections.singletonList((AbstractTask)task), null, 1);
+        scheduler.setArrivalRate(100);
+        scheduler.start();
+        Thread.sleep(300);
+        scheduler.stop();
+
+        assertTrue(task.executed.get() <= 2);
+        assertTrue(scheduler.getMissedArrivals() >= 10);
+    }
+
+    @Test
+    public void TestAsyncTask() throws Exception {
+        final AtomicInteger completed = new AtomicInteger();
+        AbstractAsyncTask task = new AbstractAsyncTask() {
+            @Override
+            public int getMaxInFlight() {
+                return 2;
+            }
+
+            @Override
+            public void execute(Completion completion) {
+                completion.success("async", "open", 0);
+                completed.incrementAndGet();
+            }
+
+            @Override
+            public int getWeight() {
+                return 1;
+            }
+
+            @Override
+            public String getName() {
+                return "async";
+            }
+        };
+        ArrivalScheduler scheduler = new ArrivalScheduler(Collections.singletonList((AbstractTask)task),
+            new ArrivalRateProfile() {
+                @Override
+                public double getArrivalRate(long elapsedTime) {
+                    return 200;
+                }
+            }, 4);
+        scheduler.start();
+        Thread.sleep(300);
+        scheduler.stop();
+
+        // each arrival executes the async task, instead of failing without permits
+        assertTrue(completed.get() >= 30);
+    }
+}
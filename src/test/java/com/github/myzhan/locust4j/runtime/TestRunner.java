@@ -3,9 +3,12 @@ package com.github.myzhan.locust4j.runtime;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.github.myzhan.locust4j.AbstractTask;
 import com.github.myzhan.locust4j.message.Message;
+import com.github.myzhan.locust4j.ratelimit.AbstractRateLimiter;
+import com.github.myzhan.locust4j.ratelimit.StableRateLimiter;
 import com.github.myzhan.locust4j.stats.Stats;
 import org.junit.Assert;
 import org.junit.Before;
@@ -14,8 +17,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author myzhan
@@ -68,6 +73,72 @@ public class TestRunner {
         runner.stop();
     }
 
+    @Test
+    public void TestSpawnIncrementally() throws Exception {
+        final AtomicInteger started = new AtomicInteger();
+        final AtomicInteger stopped = new AtomicInteger();
+        runner.setTasks(Collections.singletonList((AbstractTask) new TestTask() {
+            @Override
+            public void run() {
+                started.incrementAndGet();
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        Thread.sleep(10);
+                    }
+                } catch (InterruptedException ex) {
+                    // stopped by runner
+                } finally {
+                    stopped.incrementAndGet();
+                }
+            }
+        }));
+
+        runner.startSpawning(10);
+        assertEquals(10, runner.numClients);
+        runner.startSpawning(20);
+        assertEquals(20, runner.numClients);
+        for (int i = 0; i < 100 && started.get() < 20; i++) {
+            Thread.sleep(10);
+        }
+        runner.startSpawning(5);
+        assertEquals(5, runner.numClients);
+
+        // running users are kept while ramping up
+        for (int i = 0; i < 100 && stopped.get() < 15; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(20, started.get());
+        assertEquals(15, stopped.get());
+
+        runner.stop();
+        assertEquals(0, runner.numClients);
+    }
+
+    @Test
+    public void TestStartSpawningOnVirtualThreads() {
+        // falls back to platform threads before JDK 21
+        runner.setVirtualThreadsEnabled(true);
+        runner.startSpawning(10);
+        assertEquals(10, runner.numClients);
+        runner.stop();
+    }
+
+    @Test
+    public void TestMissedArrivals() throws Exception {
+        // one executor can't keep up with 1000 executions per second of a 10ms task
+        runner.setOpenModel(null, 1);
+        runner.startSpawning(1000);
+        Thread.sleep(200);
+        assertTrue(runner.getMissedArrivals() > 0);
+
+        // kept after the test is stopped
+        runner.stop();
+        long missedArrivals = runner.getMissedArrivals();
+        assertTrue(missedArrivals > 0);
+        Thread.sleep(20);
+        assertEquals(missedArrivals, runner.getMissedArrivals());
+    }
+
     @Test
     public void TestOnInvalidSpawnMessage() {
         MockRPCClient client = new MockRPCClient();
@@ -157,6 +228,33 @@ public class TestRunner {
         runner.quit();
     }
 
+    @Test
+    public void TestRateLimitersOfTasks() throws Exception {
+        MockRPCClient client = new MockRPCClient();
+        AbstractTask task = new TestTask();
+        AbstractRateLimiter rateLimiter = new StableRateLimiter(100);
+        task.setRateLimiter(rateLimiter);
+        runner.setTasks(Collections.singletonList(task));
+        runner.setRPCClient(client);
+        runner.setHeartbeatStopped(true);
+        runner.getReady();
+        assertEquals("client_ready", client.getToServerQueue().take().getType());
+
+        Map<String, Object> spawnData = new HashMap<>();
+        spawnData.put("user_classes_count", Collections.singletonMap("dummy", 1));
+        client.getFromServerQueue().offer(new Message("spawn", spawnData, null, null));
+        assertEquals("spawning", client.getToServerQueue().take().getType());
+        // rate limiters are started before workers
+        assertFalse(rateLimiter.isStopped());
+        assertEquals("spawning_complete", client.getToServerQueue().take().getType());
+
+        client.getFromServerQueue().offer(new Message("stop", null, null, null));
+        assertEquals("client_stopped", client.getToServerQueue().take().getType());
+        assertTrue(rateLimiter.isStopped());
+
+        runner.quit();
+    }
+
     @Test
     public void TestGetReadyAndQuit() throws Exception {
         MockRPCClient client = new MockRPCClient();
@@ -194,4 +292,24 @@ public class TestRunner {
 
         runner.quit();
     }
+
+    @Test
+    public void TestHeartbeatInterval() throws Exception {
+        MockRPCClient client = new MockRPCClient();
+
+        runner.setRPCClient(client);
+        runner.setHeartbeatInterval(50);
+        runner.getReady();
+
+        Message clientReady = client.getToServerQueue().take();
+        assertEquals("client_ready", clientReady.getType());
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("heartbeat", client.getToServerQueue().take().getType());
+        }
+        assertTrue(System.currentTimeMillis() - start < 1000);
+
+        runner.quit();
+    }
 }
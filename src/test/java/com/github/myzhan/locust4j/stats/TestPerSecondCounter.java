@@ -0,0 +1,90 @@
+package com.github.myzhan.locust4j.stats;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author myzhan
+ */
+public class TestPerSecondCounter {
+
+    @Test
+    public void TestAddAndGet() {
+        PerSecondCounter counter = new PerSecondCounter();
+        counter.add(1000L, 1);
+        counter.add(1000L, 2);
+        counter.add(1001L, 1);
+
+        assertEquals(2, counter.size());
+        assertEquals(3, (int)counter.get(1000L));
+        assertEquals(1, (int)counter.get(1001L));
+        assertNull(counter.get(1002L));
+    }
+
+    @Test
+    public void TestOverflow() {
+        PerSecondCounter counter = new PerSecondCounter();
+        // longer than the ring, seconds share slots
+        for (long second = 1000; second < 1000 + PerSecondCounter.SLOTS * 3; second++) {
+            counter.add(second, (int)(second & 3) + 1);
+            counter.add(second, 1);
+        }
+
+        assertEquals(PerSecondCounter.SLOTS * 3, counter.size());
+        for (long second = 1000; second < 1000 + PerSecondCounter.SLOTS * 3; second++) {
+            assertEquals((int)(second & 3) + 2, (int)counter.get(second));
+        }
+        assertEquals(PerSecondCounter.SLOTS * 3, counter.toLongIntMap().size());
+    }
+
+    @Test
+    public void TestMergeAndClear() {
+        PerSecondCounter counter = new PerSecondCounter();
+        counter.add(1000L, 1);
+
+        PerSecondCounter other = new PerSecondCounter();
+        other.add(1000L, 1);
+        other.add(1000L + PerSecondCounter.SLOTS, 2);
+        counter.merge(other);
+
+        assertEquals(2, counter.size());
+        assertEquals(2, (int)counter.get(1000L));
+        assertEquals(2, (int)counter.get(1000L + PerSecondCounter.SLOTS));
+
+        counter.clear();
+        assertEquals(0, counter.size());
+        assertNull(counter.get(1000L));
+        assertNull(counter.get(1000L + PerSecondCounter.SLOTS));
+    }
+
+    @Test
+    public void TestPack() throws Exception {
+        PerSecondCounter counter = new PerSecondCounter();
+        counter.add(1000L, 1);
+        counter.add(1001L, 2);
+        counter.add(1000L + PerSecondCounter.SLOTS, 3);
+
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        counter.pack(packer);
+        Map<Value, Value> unpacked = MessagePack.newDefaultUnpacker(packer.toByteArray()).unpackValue()
+            .asMapValue().map();
+
+        assertEquals(3, unpacked.size());
+        assertEquals(1, unpacked.get(ValueFactory.newInteger(1000L)).asIntegerValue().asInt());
+        assertEquals(2, unpacked.get(ValueFactory.newInteger(1001L)).asIntegerValue().asInt());
+        assertEquals(3, unpacked.get(ValueFactory.newInteger(1000L + PerSecondCounter.SLOTS)).asIntegerValue().asInt());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void TestAddNonPositive() {
+        new PerSecondCounter().add(1000L, 0);
+    }
+}
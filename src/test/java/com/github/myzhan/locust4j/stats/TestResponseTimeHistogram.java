@@ -0,0 +1,112 @@
+package com.github.myzhan.locust4j.stats;
+
+import com.github.myzhan.locust4j.message.LongIntMap;
+import com.github.myzhan.locust4j.utils.Utils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author myzhan
+ */
+public class TestResponseTimeHistogram {
+
+    private static long roundLikeLocust(long responseTime) {
+        if (responseTime < 100) {
+            return responseTime;
+        } else if (responseTime < 1000) {
+            return Utils.round(responseTime, -1);
+        } else if (responseTime < 10000) {
+            return Utils.round(responseTime, -2);
+        } else {
+            return Utils.round(responseTime, -3);
+        }
+    }
+
+    @Test
+    public void TestRound() {
+        for (long responseTime = -10; responseTime < 200000; responseTime++) {
+            assertEquals(roundLikeLocust(responseTime), ResponseTimeHistogram.round(responseTime));
+        }
+    }
+
+    @Test
+    public void TestRecord() {
+        ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+        for (long responseTime = -10; responseTime < 200000; responseTime++) {
+            histogram.record(responseTime);
+        }
+        assertEquals(200010, histogram.getCount());
+
+        LongIntMap expected = new LongIntMap();
+        for (long responseTime = -10; responseTime < 200000; responseTime++) {
+            expected.add(roundLikeLocust(responseTime));
+        }
+        LongIntMap actual = histogram.toLongIntMap();
+        assertEquals(expected.size(), actual.size());
+        for (int slot = expected.nextSlot(0); slot >= 0; slot = expected.nextSlot(slot + 1)) {
+            assertEquals(expected.valueAt(slot), (int)actual.get(expected.keyAt(slot)));
+            assertEquals(expected.valueAt(slot), (int)histogram.get(expected.keyAt(slot)));
+        }
+        assertNull(histogram.get(105L));
+    }
+
+    @Test
+    public void TestMergeAndClear() {
+        ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+        histogram.record(1);
+        histogram.record(120000);
+
+        ResponseTimeHistogram other = new ResponseTimeHistogram();
+        other.record(1);
+        other.record(147);
+        other.record(120000);
+        histogram.merge(other);
+
+        assertEquals(5, histogram.getCount());
+        assertEquals(2, (int)histogram.get(1L));
+        assertEquals(1, (int)histogram.get(150L));
+        assertEquals(2, (int)histogram.get(120000L));
+
+        histogram.clear();
+        assertEquals(0, histogram.getCount());
+        assertNull(histogram.get(1L));
+        assertNull(histogram.get(120000L));
+        assertEquals(0, histogram.toLongIntMap().size());
+    }
+
+    @Test
+    public void TestPercentile() {
+        ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+        assertEquals(0, histogram.getPercentile(0.95));
+
+        for (int responseTime = 1; responseTime <= 100; responseTime++) {
+            histogram.record(responseTime);
+        }
+        histogram.record(120000);
+        histogram.record(-5);
+
+        assertEquals(-5, histogram.getPercentile(0));
+        assertEquals(50, histogram.getPercentile(0.5));
+        assertEquals(96, histogram.getPercentile(0.95));
+        assertEquals(120000, histogram.getPercentile(1));
+    }
+
+    @Test
+    public void TestTotalResponseTime() {
+        ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+        assertEquals(0, histogram.getTotalResponseTime());
+
+        histogram.record(5);
+        histogram.record(5);
+        histogram.record(1234);
+        histogram.record(120000);
+        assertEquals(5 + 5 + 1200 + 120000, histogram.getTotalResponseTime());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void TestRecordNonPositiveTimes() {
+        new ResponseTimeHistogram().record(70000, 0);
+    }
+}
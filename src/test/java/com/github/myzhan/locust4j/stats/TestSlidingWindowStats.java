@@ -0,0 +1,127 @@
+package com.github.myzhan.locust4j.stats;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author myzhan
+ */
+public class TestSlidingWindowStats {
+
+    private SlidingWindowStats sliding;
+
+    @Before
+    public void before() {
+        sliding = new SlidingWindowStats(2);
+    }
+
+    private static StatsWindow window(long duration, long... responseTimes) {
+        StatsWindow window = new StatsWindow();
+        for (long responseTime : responseTimes) {
+            StatsEntry entry = new StatsEntry("/api", "GET");
+            entry.reset();
+            entry.log(responseTime, 0);
+            window.merge(entry);
+        }
+        window.close(window.getStartTime() + duration);
+        return window;
+    }
+
+    private static StatsEntry failure(String method, String name) {
+        StatsEntry entry = new StatsEntry(name, method);
+        entry.reset();
+        entry.logError("error");
+        return entry;
+    }
+
+    @Test
+    public void TestEmpty() {
+        assertNull(sliding.get("GET", "/api"));
+        assertEquals(0, sliding.getTotal().getNumRequests());
+        assertEquals(0, sliding.getTotal().getPercentile(0.99));
+        assertEquals(0, sliding.getTotal().getRps(), 0);
+        assertEquals(0, sliding.getTotal().getFailureRate(), 0);
+    }
+
+    @Test
+    public void TestPercentiles() {
+        long[] responseTimes = new long[100];
+        for (int i = 0; i < responseTimes.length; i++) {
+            responseTimes[i] = i + 1;
+        }
+        sliding.onWindow(window(1000, responseTimes));
+
+        SlidingWindowStats.Snapshot snapshot = sliding.get("GET", "/api");
+        assertNotNull(snapshot);
+        assertEquals(100, snapshot.getNumRequests());
+        assertEquals(50, snapshot.getPercentile(0.5));
+        assertEquals(99, snapshot.getPercentile(0.99));
+        assertEquals(100, snapshot.getPercentile(1));
+        assertEquals(50.5, snapshot.getAvgResponseTime(), 0.001);
+        assertEquals(99, sliding.getTotal().getPercentile(0.99));
+    }
+
+    @Test
+    public void TestRpsAndFailureRate() {
+        StatsWindow window = window(500, 10, 20, 30);
+        window.merge(failure("GET", "/api"));
+        window.merge(failure("POST", "/login"));
+        sliding.onWindow(window);
+        sliding.onWindow(window(500, 40));
+
+        SlidingWindowStats.Snapshot snapshot = sliding.get("GET", "/api");
+        assertEquals(1000, snapshot.getDuration());
+        assertEquals(4, snapshot.getNumRequests());
+        assertEquals(1, snapshot.getNumFailures());
+        assertEquals(4, snapshot.getRps(), 0.001);
+        assertEquals(1, snapshot.getFailRps(), 0.001);
+        assertEquals(0.2, snapshot.getFailureRate(), 0.001);
+
+        SlidingWindowStats.Snapshot login = sliding.get("POST", "/login");
+        assertEquals(0, login.getNumRequests());
+        assertEquals(1, login.getFailureRate(), 0.001);
+
+        assertEquals(4, sliding.getTotal().getNumRequests());
+        assertEquals(2, sliding.getTotal().getNumFailures());
+    }
+
+    @Test
+    public void TestSlide() {
+        sliding.onWindow(window(100, 1000));
+        sliding.onWindow(window(100, 10));
+        assertEquals(1000, sliding.get("GET", "/api").getPercentile(1));
+
+        // the first window slides out
+        sliding.onWindow(window(100, 20));
+        SlidingWindowStats.Snapshot snapshot = sliding.get("GET", "/api");
+        assertEquals(2, snapshot.getNumRequests());
+        assertEquals(20, snapshot.getPercentile(1));
+        assertEquals(200, snapshot.getDuration());
+
+        // endpoints without test results in the span are dropped
+        sliding.onWindow(window(100));
+        assertNotNull(sliding.get("GET", "/api"));
+        sliding.onWindow(window(100));
+        assertNull(sliding.get("GET", "/api"));
+        assertEquals(0, sliding.getTotal().getNumRequests());
+    }
+
+    @Test
+    public void TestListenStats() {
+        Stats stats = new Stats();
+        stats.addWindowListener(sliding);
+        stats.recordSuccess("GET", "/api", 10, 1);
+        stats.recordSuccess("GET", "/api", 30, 1);
+        stats.recordFailure("GET", "/api", 50, "error");
+        stats.drainShards(true);
+
+        SlidingWindowStats.Snapshot snapshot = sliding.get("GET", "/api");
+        assertEquals(2, snapshot.getNumRequests());
+        assertEquals(1, snapshot.getNumFailures());
+        assertEquals(30, snapshot.getPercentile(0.99));
+    }
+}
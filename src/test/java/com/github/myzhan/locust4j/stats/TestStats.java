@@ -1,12 +1,25 @@
 package com.github.myzhan.locust4j.stats;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.github.myzhan.locust4j.Locust;
+import com.github.myzhan.locust4j.message.Visitor;
+import com.github.myzhan.locust4j.ratelimit.PacingRateLimiter;
 import com.github.myzhan.locust4j.utils.Utils;
 import org.junit.Before;
 import org.junit.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -18,28 +31,16 @@ public class TestStats {
 
     @Before
     public void before() {
-        stats = Stats.getInstance();
+        stats = new Stats();
     }
 
     @Test
     public void TestAll() throws Exception {
         stats.start();
 
-        RequestSuccess success = new RequestSuccess();
-        success.setRequestType("http");
-        success.setName("success");
-        success.setResponseTime(1);
-        success.setContentLength(10);
-        stats.getReportSuccessQueue().add(success);
+        stats.recordSuccess("http", "success", 1, 10);
+        stats.recordFailure("http", "failure", 1000, "timeout");
 
-        RequestFailure failure = new RequestFailure();
-        failure.setRequestType("http");
-        failure.setName("failure");
-        failure.setResponseTime(1000);
-        failure.setError("timeout");
-        stats.getReportFailureQueue().add(failure);
-
-        stats.wakeMeUp();
         Thread.sleep(3100);
         stats.wakeMeUp();
 
@@ -56,19 +57,8 @@ public class TestStats {
     public void TestClearAll() throws Exception {
         stats.start();
 
-        RequestSuccess success = new RequestSuccess();
-        success.setRequestType("http");
-        success.setName("success");
-        success.setResponseTime(1);
-        success.setContentLength(10);
-        stats.getReportSuccessQueue().add(success);
-
-        RequestFailure failure = new RequestFailure();
-        failure.setRequestType("http");
-        failure.setName("failure");
-        failure.setResponseTime(1000);
-        failure.setError("timeout");
-        stats.getReportFailureQueue().add(failure);
+        stats.recordSuccess("http", "success", 1, 10);
+        stats.recordFailure("http", "failure", 1000, "timeout");
 
         stats.getClearStatsQueue().offer(true);
         stats.wakeMeUp();
@@ -141,4 +131,257 @@ public class TestStats {
         assertEquals("udp", udpError.get("method"));
         assertEquals("Unknown Error", udpError.get("error"));
     }
+
+    @Test
+    public void TestRecordSuccess() {
+        Stats stats = Stats.getInstance();
+        stats.clearAll();
+        Locust.getInstance().recordSuccess("http", "recordSuccess", 1, 10);
+        stats.drainShards(true);
+
+        StatsEntry entry = stats.get("recordSuccess", "http");
+        assertEquals(1, entry.getNumRequests());
+        assertEquals(1, entry.getTotalResponseTime());
+        assertEquals(10, entry.getTotalContentLength());
+    }
+
+    @Test
+    public void TestRecordSuccessBatch() {
+        Stats stats = Stats.getInstance();
+        stats.clearAll();
+        long[] responseTimes = new long[1000];
+        for (int i = 0; i < responseTimes.length; i++) {
+            responseTimes[i] = i % 10 + 1;
+        }
+        Locust.getInstance().recordSuccessBatch("redis", "pipeline", responseTimes, 1000, 4000);
+
+        ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+        histogram.record(20);
+        histogram.record(20);
+        Locust.getInstance().recordSuccessBatch("redis", "pipeline", histogram, 8);
+        stats.drainShards(true);
+
+        StatsEntry entry = stats.get("pipeline", "redis");
+        assertEquals(1002, entry.getNumRequests());
+        assertEquals(5500 + 40, entry.getTotalResponseTime());
+        assertEquals(4008, entry.getTotalContentLength());
+        assertEquals(1, entry.getMinResponseTime());
+        assertEquals(20, entry.getMaxResponseTime());
+        assertEquals(100, entry.getResponseTimes().get(10L).intValue());
+        assertEquals(2, entry.getResponseTimes().get(20L).intValue());
+        assertEquals(1002, stats.getTotal().getNumRequests());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void TestRecordSuccessBatchWithInvalidCount() {
+        stats.recordSuccessBatch("redis", "pipeline", new long[1], 2, 0);
+    }
+
+    @Test
+    public void TestRecordFailure() {
+        Stats stats = Stats.getInstance();
+        stats.clearAll();
+        Locust.getInstance().recordFailure("http", "recordFailure", 1, "error");
+        stats.drainShards(true);
+
+        StatsEntry entry = stats.get("recordFailure", "http");
+        assertEquals(1, entry.getNumFailures());
+
+        Map<String, Object> error = stats.serializeErrors().get(Utils.md5("http", "recordFailure", "error"));
+        assertEquals("recordFailure", error.get("name"));
+        assertEquals("http", error.get("method"));
+        assertEquals("error", error.get("error"));
+        assertEquals(1L, error.get("occurrences"));
+    }
+
+    @Test
+    public void TestEndpoint() {
+        Endpoint endpoint = stats.endpoint("GET", "/api");
+        assertTrue(endpoint == stats.endpoint("GET", "/api"));
+        assertEquals("GET", endpoint.getRequestType());
+        assertEquals("/api", endpoint.getName());
+
+        endpoint.success(10, 100);
+        stats.recordSuccess("GET", "/api", 20, 100);
+        endpoint.failure(30, "timeout");
+        stats.endpoint("POST", "/api").success(40, 100);
+        stats.drainShards(true);
+
+        StatsEntry entry = stats.get("/api", "GET");
+        assertEquals(2, entry.getNumRequests());
+        assertEquals(1, entry.getNumFailures());
+        assertEquals(30, entry.getTotalResponseTime());
+        assertEquals(1, stats.get("/api", "POST").getNumRequests());
+        assertEquals(1L, stats.serializeErrors().get(Utils.md5("GET", "/api", "timeout")).get("occurrences"));
+        assertEquals(2, stats.serializeStats().size());
+    }
+
+    @Test
+    public void TestCoordinatedOmissionCorrection() throws Exception {
+        PacingRateLimiter rateLimiter = new PacingRateLimiter(100);
+        rateLimiter.start();
+        stats.setCoordinatedOmissionCorrection(true, 0);
+
+        // on schedule
+        rateLimiter.acquire();
+        stats.recordSuccess("GET", "/api", 10, 100);
+        // the thread is busy and takes the next permit late
+        Thread.sleep(50);
+        rateLimiter.acquire();
+        stats.recordSuccess("GET", "/api", 10, 100);
+        rateLimiter.stop();
+        stats.drainShards(true);
+
+        StatsEntry entry = stats.get("/api", "GET");
+        assertEquals(2, entry.getNumRequests());
+        assertTrue(entry.getMinResponseTime() < 20);
+        assertTrue(entry.getMaxResponseTime() >= 40);
+    }
+
+    private static Map<Value, Value> packAndUnpack(Map<String, Object> data) throws Exception {
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        new Visitor(packer).visit(data);
+        return MessagePack.newDefaultUnpacker(packer.toByteArray()).unpackValue().asMapValue().map();
+    }
+
+    private static Value get(Map<Value, Value> map, String key) {
+        return map.get(ValueFactory.newString(key));
+    }
+
+    @Test
+    public void TestCollectReportData() throws Exception {
+        stats.recordSuccess("http", "report", 1, 10);
+        stats.recordSuccess("http", "report", 147, 10);
+        stats.recordFailure("http", "report", 1, "timeout");
+        stats.recordFailure("http", "report", 1, "timeout");
+        stats.drainShards(true);
+
+        Map<Value, Value> data = packAndUnpack(stats.collectReportData());
+
+        assertEquals(1, get(data, "stats").asArrayValue().size());
+        Map<Value, Value> entry = get(data, "stats").asArrayValue().get(0).asMapValue().map();
+        assertEquals(14, entry.size());
+        assertEquals("report", get(entry, "name").asStringValue().asString());
+        assertEquals("http", get(entry, "method").asStringValue().asString());
+        assertEquals(2, get(entry, "num_requests").asIntegerValue().asInt());
+        assertEquals(2, get(entry, "num_failures").asIntegerValue().asInt());
+        assertEquals(148, get(entry, "total_response_time").asIntegerValue().asInt());
+        assertEquals(20, get(entry, "total_content_length").asIntegerValue().asInt());
+        Map<Value, Value> responseTimes = get(entry, "response_times").asMapValue().map();
+        assertEquals(1, responseTimes.get(ValueFactory.newInteger(1)).asIntegerValue().asInt());
+        assertEquals(1, responseTimes.get(ValueFactory.newInteger(150)).asIntegerValue().asInt());
+
+        Map<Value, Value> total = get(data, "stats_total").asMapValue().map();
+        assertEquals("Total", get(total, "name").asStringValue().asString());
+        assertEquals(2, get(total, "num_requests").asIntegerValue().asInt());
+
+        Map<Value, Value> errors = get(data, "errors").asMapValue().map();
+        Map<Value, Value> error = get(errors, Utils.md5("http", "report", "timeout")).asMapValue().map();
+        assertEquals("timeout", get(error, "error").asStringValue().asString());
+        assertEquals(2, get(error, "occurrences").asIntegerValue().asInt());
+
+        // reports only contain what happened since the last report
+        data = packAndUnpack(stats.collectReportData());
+        assertEquals(0, get(data, "stats").asArrayValue().size());
+        assertEquals(0, get(data, "errors").asMapValue().size());
+        assertEquals(0, get(get(data, "stats_total").asMapValue().map(), "num_requests").asIntegerValue().asInt());
+    }
+
+    @Test
+    public void TestMergeShards() throws Exception {
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        stats.recordSuccess("http", "merge", j % 10 + 1, 1);
+                    }
+                    stats.recordFailure("http", "merge", 1, "error");
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        stats.drainShards(true);
+
+        StatsEntry entry = stats.get("merge", "http");
+        assertEquals(8000, entry.getNumRequests());
+        assertEquals(8, entry.getNumFailures());
+        assertEquals(1, entry.getMinResponseTime());
+        assertEquals(10, entry.getMaxResponseTime());
+        assertEquals(8000, entry.getTotalContentLength());
+        assertEquals(800, (long)entry.getResponseTimes().get(1L));
+        assertEquals(8000, stats.getTotal().getNumRequests());
+        assertEquals(8, stats.getTotal().getNumFailures());
+    }
+
+    @Test
+    public void TestWindowListener() {
+        final List<Long> requestsOfWindows = new ArrayList<>();
+        final List<Long> requestsOfEntry = new ArrayList<>();
+        stats.addWindowListener(new StatsWindowListener() {
+            @Override
+            public void onWindow(StatsWindow window) {
+                requestsOfWindows.add(window.getTotal().getNumRequests());
+                StatsEntry entry = window.getEntry("http", "window");
+                requestsOfEntry.add(null == entry ? 0 : entry.getNumRequests());
+                assertTrue(window.getDuration() >= 0);
+            }
+        });
+
+        stats.recordSuccess("http", "window", 1, 1);
+        stats.recordSuccess("http", "window", 2, 1);
+        stats.drainShards(true);
+        stats.recordSuccess("http", "window", 3, 1);
+        stats.drainShards(true);
+        stats.drainShards(true);
+
+        assertEquals(Arrays.asList(2L, 1L, 0L), requestsOfWindows);
+        assertEquals(Arrays.asList(2L, 1L, 0L), requestsOfEntry);
+
+        // windows are added up into stats reported to the master
+        StatsEntry entry = stats.get("window", "http");
+        assertEquals(3, entry.getNumRequests());
+        assertEquals(6, entry.getTotalResponseTime());
+        assertEquals(3, stats.getTotal().getNumRequests());
+    }
+
+    @Test
+    public void TestWindowInterval() throws Exception {
+        final AtomicInteger windows = new AtomicInteger();
+        stats.setReportInterval(60000);
+        stats.setWindowInterval(20);
+        stats.addWindowListener(new StatsWindowListener() {
+            @Override
+            public void onWindow(StatsWindow window) {
+                windows.incrementAndGet();
+            }
+        });
+        stats.start();
+        try {
+            Thread.sleep(500);
+        } finally {
+            stats.stop();
+        }
+
+        assertTrue(windows.get() >= 5);
+        // nothing is sent to the master until the report interval elapses
+        assertTrue(stats.getMessageToRunnerQueue().isEmpty());
+    }
+
+    @Test
+    public void TestReportInterval() throws Exception {
+        stats.setReportInterval(100);
+        stats.start();
+        try {
+            stats.recordSuccess("http", "report", 1, 1);
+            Map<String, Object> data = stats.getMessageToRunnerQueue().poll(1, TimeUnit.SECONDS);
+            assertNotNull(data);
+        } finally {
+            stats.stop();
+        }
+    }
 }
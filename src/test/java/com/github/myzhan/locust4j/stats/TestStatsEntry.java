@@ -6,6 +6,7 @@ import com.github.myzhan.locust4j.message.LongIntMap;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -58,4 +59,69 @@ public class TestStatsEntry {
         assertEquals(0, entry.getNumFailures());
 
     }
+
+    @Test
+    public void TestLogMissingSamples() {
+        StatsEntry entry = new StatsEntry("http", "success");
+        entry.reset();
+
+        entry.log(35, 10);
+        entry.logMissingSamples(35, 10);
+        entry.logMissingSamples(5, 10);
+
+        // 25, 15 are added to the histogram only, and 5 is shorter than the interval
+        assertEquals(1, entry.getNumRequests());
+        assertEquals(35, entry.getTotalResponseTime());
+        assertEquals(35, entry.getMinResponseTime());
+        assertEquals(3, entry.getResponseTimeHistogram().getCount());
+        assertEquals(1, entry.getResponseTimes().get(25L).intValue());
+        assertEquals(1, entry.getResponseTimes().get(15L).intValue());
+    }
+
+    @Test
+    public void TestLogBatch() {
+        StatsEntry entry = new StatsEntry("http", "success");
+        entry.reset();
+
+        entry.logBatch(new long[] {3, 1, 2, 100}, 3, 30);
+        entry.logBatch(new long[0], 0, 0);
+
+        assertEquals(3, entry.getNumRequests());
+        assertEquals(6, entry.getTotalResponseTime());
+        assertEquals(1, entry.getMinResponseTime());
+        assertEquals(3, entry.getMaxResponseTime());
+        assertEquals(30, entry.getTotalContentLength());
+        assertNull(entry.getResponseTimes().get(100L));
+
+        ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+        histogram.record(5);
+        histogram.record(1234);
+        entry.logBatch(histogram, 10);
+
+        // rounded response times are used
+        assertEquals(5, entry.getNumRequests());
+        assertEquals(6 + 5 + 1200, entry.getTotalResponseTime());
+        assertEquals(1, entry.getMinResponseTime());
+        assertEquals(1200, entry.getMaxResponseTime());
+        assertEquals(40, entry.getTotalContentLength());
+        assertEquals(1, entry.getResponseTimes().get(1200L).intValue());
+    }
+
+    @Test
+    public void TestResponseTimesAccessors() {
+        StatsEntry entry = new StatsEntry("http", "success");
+        entry.reset();
+        entry.logResponseTime(150);
+
+        // the map is a copy
+        LongIntMap responseTimes = entry.getResponseTimes();
+        responseTimes.add(3400L, 2);
+        assertNull(entry.getResponseTimes().get(3400L));
+        assertEquals(1, entry.getResponseTimeHistogram().getCount());
+
+        entry.setResponseTimes(responseTimes);
+        assertEquals(3, entry.getResponseTimeHistogram().getCount());
+        assertEquals(1, entry.getResponseTimes().get(150L).intValue());
+        assertEquals(2, entry.getResponseTimes().get(3400L).intValue());
+    }
 }
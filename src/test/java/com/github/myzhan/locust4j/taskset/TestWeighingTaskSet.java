@@ -1,6 +1,10 @@
 package com.github.myzhan.locust4j.taskset;
 
+import java.util.concurrent.TimeUnit;
+
 import com.github.myzhan.locust4j.AbstractTask;
+import com.github.myzhan.locust4j.ratelimit.AbstractRateLimiter;
+import com.github.myzhan.locust4j.ratelimit.StableRateLimiter;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,6 +22,7 @@ public class TestWeighingTaskSet {
     private static class TestTask extends AbstractTask {
         public int weight;
         public String name;
+        public int executed = 0;
 
         public TestTask(String name, int weight) {
             this.name = name;
@@ -36,6 +41,7 @@ public class TestWeighingTaskSet {
 
         @Override
         public void execute() {
+            this.executed++;
             try {
                 logger.debug("I'm {}", this.name);
             } catch (Exception ex) {
@@ -67,4 +73,22 @@ public class TestWeighingTaskSet {
         assertEquals("test3", taskSet.getTask(31).getName());
         assertEquals("test3", taskSet.getTask(49).getName());
     }
+
+    @Test
+    public void TestRateLimitOfTask() throws Exception {
+        WeighingTaskSet taskSet = new WeighingTaskSet("testWeighingTaskSet", 1);
+        TestTask task = new TestTask("test", 1);
+        AbstractRateLimiter rateLimiter = new StableRateLimiter(1, 1, TimeUnit.HOURS);
+        task.setRateLimiter(rateLimiter);
+        taskSet.addTask(task);
+        rateLimiter.start();
+
+        taskSet.execute();
+        assertEquals(1, task.executed);
+
+        // a stopped rate limiter gives out no permit
+        rateLimiter.stop();
+        taskSet.execute();
+        assertEquals(1, task.executed);
+    }
 }
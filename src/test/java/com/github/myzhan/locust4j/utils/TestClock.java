@@ -0,0 +1,60 @@
+package com.github.myzhan.locust4j.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author myzhan
+ */
+public class TestClock {
+
+    @Test
+    public void TestCurrentTime() throws Exception {
+        long before = System.currentTimeMillis();
+        Thread.sleep(Clock.getResolution() * 5);
+        long cachedMillis = Clock.currentTimeMillis();
+        long cachedSeconds = Clock.currentTimeInSeconds();
+        long after = System.currentTimeMillis();
+
+        assertTrue(cachedMillis >= before);
+        assertTrue(cachedMillis <= after);
+        assertTrue(cachedSeconds >= before / 1000);
+        assertTrue(cachedSeconds <= after / 1000);
+        // Utils.now() isn't cached
+        assertTrue(Utils.now() >= after);
+    }
+
+    @Test
+    public void TestSetResolution() throws Exception {
+        try {
+            Clock.setResolution(1000);
+            assertEquals(1000, Clock.getResolution());
+            // the cached time is updated right away
+            assertTrue(System.currentTimeMillis() - Clock.currentTimeMillis() < 100);
+
+            // the ticker wakes up with the new resolution instead of sleeping for a second
+            Clock.setResolution(1);
+            Thread.sleep(200);
+            assertTrue(System.currentTimeMillis() - Clock.currentTimeMillis() < 100);
+        } finally {
+            Clock.setResolution(Clock.DEFAULT_RESOLUTION);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void TestInvalidResolution() {
+        Clock.setResolution(0);
+    }
+
+    @Test
+    public void TestStopwatch() throws Exception {
+        long stopwatch = Clock.stopwatch();
+        Thread.sleep(20);
+        long millis = Clock.elapsedMillis(stopwatch);
+
+        assertTrue(millis >= 20);
+        assertTrue(millis < 1000);
+    }
+}